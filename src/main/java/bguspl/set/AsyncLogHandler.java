@@ -0,0 +1,154 @@
+package bguspl.set;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler that hands records over to a dedicated writer thread through a bounded ring of preallocated slots.
+ * Publishing never blocks: when the ring is full the record is dropped and counted, and the writer reports the number
+ * of dropped records the next time it catches up.
+ * The records themselves are handed over, so their thrown exception, parameters and logger name are kept. Their source
+ * class and method are not inferred (the writer thread would find its own frames), so code that logs them must pass
+ * them explicitly (Logger::logp).
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * The number of nanoseconds the writer thread parks for when there is nothing to write.
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * The handler doing the actual (blocking) output. Only the writer thread publishes to it.
+     */
+    private final Handler target;
+
+    /**
+     * The ring slots (the capacity is a power of two, so a sequence number is mapped to a slot by masking).
+     */
+    private final int mask;
+    private final LogRecord[] records;
+
+    /**
+     * For each slot, the sequence number + 1 of the record last published in it.
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * The next sequence number to be claimed by a producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The next sequence number to be written by the writer thread.
+     */
+    private volatile long head;
+
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * @param target   - the handler to write the records to.
+     * @param capacity - the maximal number of pending records (rounded up to a power of two).
+     */
+    public AsyncLogHandler(Handler target, int capacity) {
+        this.target = target;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        records = new LogRecord[size];
+        published = new AtomicLongArray(size);
+
+        writer = new Thread(this::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord lr) {
+        if (closed || !isLoggable(lr)) return;
+
+        // claim a sequence number unless the ring is full
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head > mask) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        records[slot] = lr;
+        published.lazySet(slot, sequence + 1);
+    }
+
+    /**
+     * The main loop of the writer thread.
+     */
+    private void writeLoop() {
+        while (!closed || head != tail.get())
+            if (writePending() == 0)
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+    }
+
+    /**
+     * Writes all records published so far to the target handler.
+     *
+     * @return - the number of records written.
+     */
+    private int writePending() {
+        int written = 0;
+        long sequence = head;
+        while (true) {
+            int slot = (int) sequence & mask;
+            if (published.get(slot) != sequence + 1) break;
+            LogRecord record = records[slot];
+            records[slot] = null;
+            head = ++sequence;
+            target.publish(record);
+            ++written;
+        }
+
+        long lost = dropped.sumThenReset();
+        if (lost > 0)
+            target.publish(new LogRecord(Level.WARNING, "log ring full: " + lost + " records dropped"));
+        return written;
+    }
+
+    /**
+     * Waits until every record published before this call was written, then flushes the target handler.
+     */
+    @Override
+    public void flush() {
+        long until = tail.get();
+        while (head < until && writer.isAlive())
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        target.flush();
+    }
+
+    @Override
+    public void close() throws SecurityException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+
+    @Override
+    public synchronized void setFormatter(Formatter newFormatter) throws SecurityException {
+        super.setFormatter(newFormatter);
+        target.setFormatter(newFormatter);
+    }
+}
@@ -21,6 +21,31 @@ public class Config {
     public final long randomSpinMin;
     public final long randomSpinMax;
 
+    /**
+     * Whether to log every call made to the user interface (for debugging / testing)
+     */
+    public final boolean traceUserInterface;
+
+    /**
+     * Every how many key presses one is logged (0 to log no key presses)
+     */
+    public final int keyPressTraceInterval;
+
+    /**
+     * The file to write the binary game event journals to, with each game's start time added to the name (empty for no journal)
+     */
+    public final String journalFile;
+
+    /**
+     * The file to append the game results to (empty for no leaderboard)
+     */
+    public final String leaderboardFile;
+
+    /**
+     * The seed of the dealer's random number generator (0 for a random seed)
+     */
+    public final long randomSeed;
+
     /**
      * The number of features on the cards (e.g. shape, color etc.)
      */
@@ -56,6 +81,27 @@ public class Config {
      */
     public final boolean hints;
 
+    /**
+     * Whether to run the game on simulated time (time skips ahead whenever all the game threads are idle)
+     */
+    public final boolean simulatedTime;
+
+    /**
+     * Whether to profile the game engine monitors (reported at the end of the game and over JMX)
+     */
+    public final boolean lockProfiling;
+
+    /**
+     * How the dealer and the players are coordinated (Locking, Single-Writer or Actor)
+     */
+    public final EngineMode engineMode;
+
+    /**
+     * The number of events buffered for the user interface, which then runs on a thread of its own (0 to call the
+     * user interface directly from the game threads)
+     */
+    public final int eventBufferSize;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -192,6 +238,11 @@ public class Config {
         randomSpinMax = Long.parseLong(properties.getProperty("RandomSpinMax", "0"));
         if (randomSpinMax < randomSpinMin || randomSpinMin < 0)
             logger.severe("invalid random spin cycles: max: " + randomSpinMax + " min: " + randomSpinMin);
+        traceUserInterface = Boolean.parseBoolean(properties.getProperty("TraceUserInterface", "False"));
+        keyPressTraceInterval = Integer.parseInt(properties.getProperty("KeyPressTraceInterval", "0"));
+        journalFile = properties.getProperty("JournalFile", "").trim();
+        leaderboardFile = properties.getProperty("LeaderboardFile", "").trim();
+        randomSeed = Long.parseLong(properties.getProperty("RandomSeed", "0"));
 
         // cards settings
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
@@ -204,6 +255,10 @@ public class Config {
         players = humanPlayers + computerPlayers;
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        simulatedTime = Boolean.parseBoolean(properties.getProperty("SimulatedTime", "False"));
+        lockProfiling = Boolean.parseBoolean(properties.getProperty("LockProfiling", "False"));
+        engineMode = EngineMode.parse(properties.getProperty("EngineMode", "Locking"));
+        eventBufferSize = Integer.parseInt(properties.getProperty("EventBufferSize", "0"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
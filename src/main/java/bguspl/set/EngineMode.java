@@ -0,0 +1,36 @@
+package bguspl.set;
+
+/**
+ * The ways the game engine can coordinate the dealer and the players.
+ */
+public enum EngineMode {
+
+    /**
+     * The dealer and the player threads mutate the table and the tokens under shared monitors.
+     */
+    LOCKING,
+
+    /**
+     * Only the dealer thread mutates the table and the tokens: players submit their key presses as commands to a
+     * lock-free queue, and the dealer applies them in batches and publishes snapshots of the table.
+     */
+    SINGLE_WRITER,
+
+    /**
+     * The players are actors: instead of a thread each, they handle the messages in their mailboxes (key presses and
+     * unfreezes) in tasks on a shared work-stealing pool and never block. They send their token toggles to the dealer,
+     * which owns the table and the tokens as in SINGLE_WRITER.
+     */
+    ACTOR;
+
+    /**
+     * Parses a mode name, ignoring case and accepting '-' for '_' (e.g. "single-writer").
+     *
+     * @param name - the name of the mode.
+     * @return - the mode.
+     * @throws IllegalArgumentException - if there is no such mode.
+     */
+    public static EngineMode parse(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
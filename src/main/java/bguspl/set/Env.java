@@ -8,11 +8,34 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final GameMetrics metrics;
+    public final GameJournal journal;
+    public final GameClock clock;
+    public final LockProfiler locks;
+    public final GameAnalytics analytics;
+
+    /**
+     * The publisher of the game events, to which spectators and other consumers may subscribe (null if the events are
+     * not published, see Config::eventBufferSize).
+     */
+    public final GameEventPublisher events;
 
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, new GameMetrics(config), GameJournal.DISABLED, new RealGameClock(),
+                new GameAnalytics(config, new RealGameClock()), null);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameMetrics metrics, GameJournal journal,
+               GameClock clock, GameAnalytics analytics, GameEventPublisher events) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.metrics = metrics;
+        this.journal = journal;
+        this.clock = clock;
+        this.events = events;
+        this.locks = metrics.locks;
+        this.analytics = analytics;
     }
 }
@@ -0,0 +1,240 @@
+package bguspl.set;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Streaming statistics of the game play (as opposed to {@link GameMetrics}, which measures the engine), fed from the
+ * dealer as claims are decided and cards are dealt. Only fixed-size sketches are kept (histograms and exponentially
+ * decayed rates), so the memory used does not grow with the length of the game.
+ */
+public class GameAnalytics implements GameAnalyticsMXBean {
+
+    /**
+     * Claims taken less than this many milliseconds after the previous one belong to the same burst.
+     */
+    private static final long BURST_GAP_MILLIS = 1000;
+
+    /**
+     * The half-life (in milliseconds of game time) of the decayed rates.
+     */
+    private static final double RATE_HALF_LIFE_MILLIS = 60_000;
+
+    private static final double MILLIS_PER_MINUTE = 60_000;
+    private static final AtomicInteger games = new AtomicInteger();
+
+    /**
+     * An event rate that forgets old events exponentially (each event weighs half as much after a half-life).
+     */
+    private static final class DecayingRate {
+
+        private double weight;
+        private long lastMillis;
+
+        synchronized void add(long nowMillis) {
+            weight = decayed(nowMillis) + 1;
+            lastMillis = nowMillis;
+        }
+
+        /**
+         * @return - the rate in events per minute (the total weight divided by the mean age of an event).
+         */
+        synchronized double perMinute(long nowMillis) {
+            return decayed(nowMillis) * Math.log(2) / RATE_HALF_LIFE_MILLIS * MILLIS_PER_MINUTE;
+        }
+
+        synchronized void reset() {
+            weight = 0;
+        }
+
+        private double decayed(long nowMillis) {
+            return weight * Math.pow(0.5, Math.max(0, nowMillis - lastMillis) / RATE_HALF_LIFE_MILLIS);
+        }
+    }
+
+    private final GameClock clock;
+    private final Histogram timeToFindSet = new Histogram();
+    private final Histogram setsLeftOnReshuffle = new Histogram();
+    private final Histogram claimBursts = new Histogram();
+    private final DecayingRate claimRate = new DecayingRate();
+    private final DecayingRate[] penaltyRates;
+
+    /**
+     * The game time the cards were last dealt at, the time of the last claim and the size of the current burst
+     * (guarded by this).
+     */
+    private long dealtMillis;
+    private long lastClaimMillis;
+    private long burst;
+
+    /**
+     * The name the analytics are registered under (null if not registered).
+     */
+    private ObjectName name;
+
+    public GameAnalytics(Config config, GameClock clock) {
+        this.clock = clock;
+        penaltyRates = new DecayingRate[config.players];
+        for (int i = 0; i < penaltyRates.length; ++i)
+            penaltyRates[i] = new DecayingRate();
+        dealtMillis = clock.currentTimeMillis();
+    }
+
+    /**
+     * Registers the analytics with the platform MBean server.
+     *
+     * @param logger - the game logger (registration failures are logged and otherwise ignored).
+     */
+    public void register(Logger logger) {
+        try {
+            ObjectName objectName = new ObjectName("bguspl.set:type=GameAnalytics,name=game-" + games.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            name = objectName;
+        } catch (JMException | SecurityException e) {
+            logger.severe("cannot register game analytics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Unregisters the analytics from the platform MBean server (if registered).
+     */
+    public void unregister() {
+        if (name == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException ignored) {
+        }
+        name = null;
+    }
+
+    /**
+     * Called by the dealer whenever it placed cards on the table.
+     */
+    public synchronized void cardsDealt() {
+        dealtMillis = clock.currentTimeMillis();
+    }
+
+    /**
+     * Called when a player's claim was found to be a legal set.
+     *
+     * @param player - the id of the player.
+     */
+    public void setFound(int player) {
+        long now = claim();
+        synchronized (this) {
+            timeToFindSet.record(now - dealtMillis);
+        }
+    }
+
+    /**
+     * Called when a player's claim was found not to be a legal set.
+     *
+     * @param player - the id of the player.
+     */
+    public void penalty(int player) {
+        penaltyRates[player].add(claim());
+    }
+
+    /**
+     * Called by the dealer when the countdown ran out and the cards are about to be collected.
+     *
+     * @param setsLeft - the number of legal sets among the cards on the table.
+     */
+    public void reshuffled(int setsLeft) {
+        setsLeftOnReshuffle.record(setsLeft);
+        flushBurst(clock.currentTimeMillis());
+    }
+
+    /**
+     * Counts a decided claim towards the claim rate and the current burst.
+     *
+     * @return - the current game time.
+     */
+    private synchronized long claim() {
+        long now = clock.currentTimeMillis();
+        claimRate.add(now);
+        flushBurst(now);
+        ++burst;
+        lastClaimMillis = now;
+        return now;
+    }
+
+    /**
+     * Records the current burst if it is over (i.e. no claim was taken for a burst gap).
+     *
+     * @param nowMillis - the current game time.
+     */
+    private synchronized void flushBurst(long nowMillis) {
+        if (burst > 0 && nowMillis - lastClaimMillis >= BURST_GAP_MILLIS) {
+            claimBursts.record(burst);
+            burst = 0;
+        }
+    }
+
+    /**
+     * @return - the number of claims in the burst still in progress (0 if none).
+     */
+    private synchronized long currentBurst() {
+        flushBurst(clock.currentTimeMillis());
+        return burst;
+    }
+
+    @Override
+    public HistogramSnapshot getTimeToFindSetMillis() {
+        return timeToFindSet.snapshot(1);
+    }
+
+    @Override
+    public HistogramSnapshot getSetsLeftOnReshuffle() {
+        return setsLeftOnReshuffle.snapshot(1);
+    }
+
+    @Override
+    public HistogramSnapshot getClaimBurstSizes() {
+        flushBurst(clock.currentTimeMillis());
+        return claimBursts.snapshot(1);
+    }
+
+    @Override
+    public double getClaimsPerMinute() {
+        return claimRate.perMinute(clock.currentTimeMillis());
+    }
+
+    @Override
+    public double[] getPenaltiesPerMinute() {
+        long now = clock.currentTimeMillis();
+        double[] rates = new double[penaltyRates.length];
+        for (int i = 0; i < rates.length; ++i)
+            rates[i] = penaltyRates[i].perMinute(now);
+        return rates;
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder sb = new StringBuilder("game analytics:");
+        String nl = System.lineSeparator();
+        sb.append(nl).append("  time to find a set (ms): ").append(getTimeToFindSetMillis());
+        sb.append(nl).append("  sets left on reshuffle: ").append(getSetsLeftOnReshuffle());
+        sb.append(nl).append("  claim burst sizes: ").append(getClaimBurstSizes())
+                .append(" (in progress: ").append(currentBurst()).append(')');
+        sb.append(nl).append(String.format("  claims per minute: %.2f", getClaimsPerMinute()));
+        double[] penalties = getPenaltiesPerMinute();
+        for (int i = 0; i < penalties.length; ++i)
+            sb.append(nl).append(String.format("  player %d penalties per minute: %.2f", i, penalties[i]));
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized void reset() {
+        timeToFindSet.reset();
+        setsLeftOnReshuffle.reset();
+        claimBursts.reset();
+        claimRate.reset();
+        for (DecayingRate rate : penaltyRates)
+            rate.reset();
+        burst = 0;
+    }
+}
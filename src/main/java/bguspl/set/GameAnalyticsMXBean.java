@@ -0,0 +1,42 @@
+package bguspl.set;
+
+/**
+ * The JMX management interface of {@link GameAnalytics}.
+ */
+public interface GameAnalyticsMXBean {
+
+    /**
+     * @return - the game time (in milliseconds) from dealing cards until the next legal set was claimed.
+     */
+    HistogramSnapshot getTimeToFindSetMillis();
+
+    /**
+     * @return - the number of legal sets left on the table whenever the countdown ran out.
+     */
+    HistogramSnapshot getSetsLeftOnReshuffle();
+
+    /**
+     * @return - the number of claims in each burst (claims taken less than a burst gap apart) that is over.
+     */
+    HistogramSnapshot getClaimBurstSizes();
+
+    /**
+     * @return - the recent claim rate (per minute of game time), decayed exponentially.
+     */
+    double getClaimsPerMinute();
+
+    /**
+     * @return - the recent penalty rate (per minute of game time) of each player, decayed exponentially.
+     */
+    double[] getPenaltiesPerMinute();
+
+    /**
+     * @return - a one-line-per-statistic summary of all of the above (including the burst still in progress).
+     */
+    String getReport();
+
+    /**
+     * Clears all the histograms and rates.
+     */
+    void reset();
+}
@@ -0,0 +1,51 @@
+package bguspl.set;
+
+/**
+ * The source of time for the game engine. All the timing of the game (timeouts, freezes, delays) goes through the
+ * clock, so that the game can run on a simulated time line.
+ */
+public interface GameClock {
+
+    /**
+     * @return - the current game time in milliseconds.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Sleeps for the given amount of game time.
+     *
+     * @param millis - the number of milliseconds to sleep.
+     * @throws InterruptedException - if the thread was interrupted while sleeping.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Waits on a monitor (held by the caller) until it is notified or the given amount of game time has passed.
+     * As with Object.wait, the caller should re-check its condition on return.
+     *
+     * @param monitor - the monitor to wait on.
+     * @param millis  - the maximal number of milliseconds to wait (0 to wait until notified).
+     * @throws InterruptedException - if the thread was interrupted while waiting.
+     */
+    void await(Object monitor, long millis) throws InterruptedException;
+
+    /**
+     * Wakes all the threads waiting on a monitor (held by the caller). Threads waiting through await must be woken
+     * this way, so that the clock stops counting them as idle before they get to run again.
+     *
+     * @param monitor - the monitor to notify.
+     */
+    void wake(Object monitor);
+
+    /**
+     * Called by a game thread when it starts, so that the clock knows which threads take part in the game. A task
+     * running on a pool thread may also register for as long as it runs, so that the game time does not skip ahead
+     * while it is busy.
+     */
+    void register();
+
+    /**
+     * Called by a game thread when it terminates.
+     */
+    void unregister();
+}
@@ -0,0 +1,126 @@
+package bguspl.set;
+
+/**
+ * An immutable event of the game engine, corresponding to one call of the {@link UserInterface}.
+ */
+public class GameEvent {
+
+    public enum Type {
+        PLACE_CARD, REMOVE_CARD, PLACE_TOKEN, REMOVE_TOKENS, REMOVE_SLOT_TOKENS, REMOVE_TOKEN,
+        COUNTDOWN, ELAPSED, FREEZE, SCORE, WINNERS;
+
+        /**
+         * @return - true iff an event of this type only states the current value of something (the countdown, or the
+         *           freeze time or score of a player), so a newer event of the same type (and player) supersedes it.
+         */
+        public boolean isState() {
+            return this == COUNTDOWN || this == ELAPSED || this == FREEZE || this == SCORE;
+        }
+    }
+
+    public final Type type;
+
+    /**
+     * The player, the slot and the card the event refers to (-1 where not applicable).
+     */
+    public final int player;
+    public final int slot;
+    public final int card;
+
+    /**
+     * The milliseconds (countdown, elapsed and freeze events) or the score (score events).
+     */
+    public final long value;
+
+    /**
+     * Whether the countdown is in warning mode (countdown events).
+     */
+    public final boolean warn;
+
+    /**
+     * The winners (winners events, null otherwise).
+     */
+    private final int[] winners;
+
+    private GameEvent(Type type, int player, int slot, int card, long value, boolean warn, int[] winners) {
+        this.type = type;
+        this.player = player;
+        this.slot = slot;
+        this.card = card;
+        this.value = value;
+        this.warn = warn;
+        this.winners = winners;
+    }
+
+    public static GameEvent placeCard(int card, int slot) {
+        return new GameEvent(Type.PLACE_CARD, -1, slot, card, 0, false, null);
+    }
+
+    public static GameEvent removeCard(int slot) {
+        return new GameEvent(Type.REMOVE_CARD, -1, slot, -1, 0, false, null);
+    }
+
+    public static GameEvent placeToken(int player, int slot) {
+        return new GameEvent(Type.PLACE_TOKEN, player, slot, -1, 0, false, null);
+    }
+
+    public static GameEvent removeTokens() {
+        return new GameEvent(Type.REMOVE_TOKENS, -1, -1, -1, 0, false, null);
+    }
+
+    public static GameEvent removeTokens(int slot) {
+        return new GameEvent(Type.REMOVE_SLOT_TOKENS, -1, slot, -1, 0, false, null);
+    }
+
+    public static GameEvent removeToken(int player, int slot) {
+        return new GameEvent(Type.REMOVE_TOKEN, player, slot, -1, 0, false, null);
+    }
+
+    public static GameEvent countdown(long millies, boolean warn) {
+        return new GameEvent(Type.COUNTDOWN, -1, -1, -1, millies, warn, null);
+    }
+
+    public static GameEvent elapsed(long millies) {
+        return new GameEvent(Type.ELAPSED, -1, -1, -1, millies, false, null);
+    }
+
+    public static GameEvent freeze(int player, long millies) {
+        return new GameEvent(Type.FREEZE, player, -1, -1, millies, false, null);
+    }
+
+    public static GameEvent score(int player, int score) {
+        return new GameEvent(Type.SCORE, player, -1, -1, score, false, null);
+    }
+
+    public static GameEvent winners(int[] players) {
+        return new GameEvent(Type.WINNERS, -1, -1, -1, 0, false, players.clone());
+    }
+
+    /**
+     * @return - the winners (winners events only).
+     */
+    public int[] winners() {
+        return winners.clone();
+    }
+
+    /**
+     * Makes the user interface call corresponding to the event.
+     *
+     * @param ui - the user interface.
+     */
+    public void applyTo(UserInterface ui) {
+        switch (type) {
+            case PLACE_CARD: ui.placeCard(card, slot); break;
+            case REMOVE_CARD: ui.removeCard(slot); break;
+            case PLACE_TOKEN: ui.placeToken(player, slot); break;
+            case REMOVE_TOKENS: ui.removeTokens(); break;
+            case REMOVE_SLOT_TOKENS: ui.removeTokens(slot); break;
+            case REMOVE_TOKEN: ui.removeToken(player, slot); break;
+            case COUNTDOWN: ui.setCountdown(value, warn); break;
+            case ELAPSED: ui.setElapsed(value); break;
+            case FREEZE: ui.setFreeze(player, value); break;
+            case SCORE: ui.setScore(player, (int) value); break;
+            case WINNERS: ui.announceWinner(winners); break;
+        }
+    }
+}
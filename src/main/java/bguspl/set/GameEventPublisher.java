@@ -0,0 +1,294 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * A user interface layer that turns the engine's calls into {@link GameEvent}s and publishes them to any number of
+ * subscribers (user interfaces, loggers, spectators). Every subscriber has a bounded buffer drained by a thread of its
+ * own, and a policy for when it falls behind, so a slow subscriber never slows down the game (unless its policy is
+ * BLOCK) and subscribers do not slow each other down.
+ */
+public class GameEventPublisher implements UserInterface {
+
+    /**
+     * What to do with a new event when a subscriber's buffer is full.
+     */
+    public enum Policy {
+
+        /**
+         * A state event (see GameEvent.Type::isState) replaces the pending event of the same type and player, if any.
+         * Otherwise, the buffer grows, so that no change of the board is lost and the publisher never waits (the
+         * engine publishes while holding the table).
+         */
+        COALESCE,
+
+        /**
+         * The new event is dropped (and counted).
+         */
+        DROP,
+
+        /**
+         * The publisher waits for room.
+         */
+        BLOCK
+    }
+
+    /**
+     * Receives the published events, one at a time, on the subscription's thread.
+     */
+    public interface Subscriber {
+
+        void onNext(GameEvent event);
+
+        /**
+         * Called after the last event, when the publisher is disposed.
+         */
+        default void onComplete() {}
+    }
+
+    private final Logger logger;
+    private final int players;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param logger - the game logger.
+     * @param config - the game configuration.
+     */
+    public GameEventPublisher(Logger logger, Config config) {
+        this.logger = logger;
+        this.players = config.players;
+    }
+
+    /**
+     * Subscribes to the events published from now on.
+     *
+     * @param name       - the name of the subscriber (for its thread and the log).
+     * @param subscriber - the subscriber.
+     * @param capacity   - the maximal number of events buffered for the subscriber.
+     * @param policy     - what to do when the buffer is full.
+     * @return - the subscription.
+     */
+    public Subscription subscribe(String name, Subscriber subscriber, int capacity, Policy policy) {
+        Subscription subscription = new Subscription(name, subscriber, capacity, policy);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * A subscriber's buffer (a ring of events guarded by the subscription) and the thread delivering them.
+     */
+    public class Subscription {
+
+        private final String name;
+        private final Subscriber subscriber;
+        private final Policy policy;
+        private final Thread thread;
+        private GameEvent[] ring;
+        private long head;
+        private long tail;
+        private boolean closed;
+
+        /**
+         * For each state key (see keyOf), the sequence number of the pending event with that key (-1 if none).
+         */
+        private final long[] pendingState;
+
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+
+        private Subscription(String name, Subscriber subscriber, int capacity, Policy policy) {
+            this.name = name;
+            this.subscriber = subscriber;
+            this.policy = policy;
+            this.ring = new GameEvent[Math.max(1, capacity)];
+            this.pendingState = new long[GameEvent.Type.values().length * (players + 1)];
+            Arrays.fill(pendingState, -1);
+            this.thread = new Thread(this::deliver, "events-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        private int keyOf(GameEvent event) {
+            return event.type.ordinal() * (players + 1) + event.player + 1;
+        }
+
+        private synchronized void offer(GameEvent event) {
+            if (closed) return;
+            boolean state = policy == Policy.COALESCE && event.type.isState();
+            if (state) {
+                long pending = pendingState[keyOf(event)];
+                if (pending >= head) {
+                    ring[(int) (pending % ring.length)] = event;
+                    coalesced.increment();
+                    return;
+                }
+            }
+            if (tail - head == ring.length && policy == Policy.DROP) {
+                dropped.increment();
+                return;
+            }
+            if (tail - head == ring.length && policy == Policy.COALESCE) grow();
+            try {
+                while (tail - head == ring.length && !closed)
+                    wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.increment();
+                return;
+            }
+            if (state) pendingState[keyOf(event)] = tail;
+            ring[(int) (tail++ % ring.length)] = event;
+            notifyAll();
+        }
+
+        /**
+         * Doubles the ring, keeping every event at its sequence number (modulo the new length).
+         */
+        private void grow() {
+            GameEvent[] grown = new GameEvent[ring.length * 2];
+            for (long sequence = head; sequence < tail; ++sequence)
+                grown[(int) (sequence % grown.length)] = ring[(int) (sequence % ring.length)];
+            ring = grown;
+        }
+
+        private synchronized GameEvent take() throws InterruptedException {
+            while (head == tail && !closed)
+                wait();
+            if (head == tail) return null;
+            int index = (int) (head % ring.length);
+            GameEvent event = ring[index];
+            ring[index] = null;
+            ++head;
+            notifyAll();
+            return event;
+        }
+
+        private void deliver() {
+            try {
+                GameEvent event;
+                while ((event = take()) != null) {
+                    try {
+                        subscriber.onNext(event);
+                    } catch (RuntimeException e) {
+                        logger.severe("event subscriber " + name + " failed: " + e);
+                    }
+                }
+            } catch (InterruptedException ignored) {
+            }
+            subscriber.onComplete();
+        }
+
+        /**
+         * Stops accepting events, and waits until the subscriber received the pending ones.
+         */
+        public void close() {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            subscriptions.remove(this);
+            if (dropped.sum() > 0 || coalesced.sum() > 0)
+                logger.info("event subscriber " + name + ": " + dropped.sum() + " events dropped, "
+                        + coalesced.sum() + " coalesced, buffer of " + capacity() + " events");
+        }
+
+        /**
+         * @return - the number of events the buffer holds (more than subscribed with if it grew, COALESCE policy).
+         */
+        public synchronized int capacity() {
+            return ring.length;
+        }
+
+        /**
+         * @return - the number of events dropped so far (DROP policy).
+         */
+        public long dropped() {
+            return dropped.sum();
+        }
+
+        /**
+         * @return - the number of events superseded by newer ones so far (COALESCE policy).
+         */
+        public long coalesced() {
+            return coalesced.sum();
+        }
+    }
+
+    private void publish(GameEvent event) {
+        for (Subscription subscription : subscriptions)
+            subscription.offer(event);
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        publish(GameEvent.placeCard(card, slot));
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        publish(GameEvent.removeCard(slot));
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        publish(GameEvent.placeToken(player, slot));
+    }
+
+    @Override
+    public void removeTokens() {
+        publish(GameEvent.removeTokens());
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        publish(GameEvent.removeTokens(slot));
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        publish(GameEvent.removeToken(player, slot));
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        publish(GameEvent.countdown(millies, warn));
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        publish(GameEvent.elapsed(millies));
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        publish(GameEvent.freeze(player, millies));
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        publish(GameEvent.score(player, score));
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        publish(GameEvent.winners(players));
+    }
+
+    /**
+     * Delivers the pending events and completes all the subscriptions.
+     */
+    @Override
+    public void dispose() {
+        for (Subscription subscription : subscriptions)
+            subscription.close();
+    }
+}
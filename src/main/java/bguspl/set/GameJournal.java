@@ -0,0 +1,333 @@
+package bguspl.set;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.logging.Logger;
+
+/**
+ * A compact binary, append-only journal of the game events (written through a memory-mapped file).
+ * Every event is a type byte, the delta from the previous event time (zigzag varint, in milliseconds) and the event
+ * arguments (varints). The journal of a disabled game is {@link #DISABLED}, whose methods return immediately.
+ */
+public class GameJournal implements Closeable {
+
+    /**
+     * The event types.
+     */
+    public static final int PLACE_CARD = 1;     // card, slot
+    public static final int REMOVE_CARD = 2;    // slot
+    public static final int PLACE_TOKEN = 3;    // player, slot
+    public static final int REMOVE_TOKEN = 4;   // player, slot
+    public static final int CLAIM = 5;          // player, card, card, card, valid
+    public static final int FREEZE = 6;         // player, millis
+    public static final int RESHUFFLE = 7;      // (no arguments)
+    public static final int SEED = 8;           // seed (zigzag varint)
+
+    private static final int MAGIC = 0x5345544A; // "SETJ"
+    private static final int VERSION = 1;
+
+    /**
+     * The size of each mapped region of the file, and the most bytes a single event may take.
+     */
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int MAX_EVENT_BYTES = 64;
+
+    public static final GameJournal DISABLED = new GameJournal(null, null);
+
+    private final FileChannel channel;
+    private final GameClock clock;
+    private MappedByteBuffer buffer;
+    private long bufferPosition;
+    private long lastMillis;
+
+    private GameJournal(FileChannel channel, GameClock clock) {
+        this.channel = channel;
+        this.clock = clock;
+    }
+
+    /**
+     * Opens a new journal file for the game, named after the JournalFile setting with the game start time inserted
+     * before the extension (e.g. journal/game_10-19_14-05-09.bin, with a counter added if that file exists already).
+     *
+     * @param logger - the game logger.
+     * @param config - the game configuration.
+     * @param clock  - the game clock (event times are recorded in game time).
+     * @return - the journal, or DISABLED if journaling is off or the file cannot be created.
+     */
+    public static GameJournal open(Logger logger, Config config, GameClock clock) {
+        if (config.journalFile.isEmpty()) return DISABLED;
+        String name = config.journalFile;
+        int dot = name.lastIndexOf('.');
+        if (dot <= Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'))) dot = name.length();
+        String prefix = name.substring(0, dot) + new SimpleDateFormat("_M-d_HH-mm-ss").format(new Date());
+        Path path = Paths.get(prefix + name.substring(dot));
+        try {
+            if (path.getParent() != null) path.getParent().toFile().mkdirs();
+            FileChannel channel = null;
+            for (int copy = 2; channel == null; ++copy) {
+                try {
+                    channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE);
+                } catch (FileAlreadyExistsException e) {
+                    path = Paths.get(prefix + "-" + copy + name.substring(dot));
+                }
+            }
+            logger.info("writing the game journal to " + path);
+            GameJournal journal = new GameJournal(channel, clock);
+            journal.writeHeader(config);
+            return journal;
+        } catch (IOException e) {
+            logger.severe("cannot open game journal " + path + ": " + e.getMessage());
+            return DISABLED;
+        }
+    }
+
+    /**
+     * @return - true iff events are being written.
+     */
+    public boolean enabled() {
+        return channel != null;
+    }
+
+    private synchronized void writeHeader(Config config) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, CHUNK_BYTES);
+        lastMillis = clock.currentTimeMillis();
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.putLong(lastMillis);
+        putVarint(config.featureCount);
+        putVarint(config.featureSize);
+        putVarint(config.rows);
+        putVarint(config.columns);
+        putVarint(config.players);
+    }
+
+    public void placeCard(int card, int slot) {
+        if (channel != null) event(PLACE_CARD, card, slot);
+    }
+
+    public void removeCard(int slot) {
+        if (channel != null) event(REMOVE_CARD, slot);
+    }
+
+    public void placeToken(int player, int slot) {
+        if (channel != null) event(PLACE_TOKEN, player, slot);
+    }
+
+    public void removeToken(int player, int slot) {
+        if (channel != null) event(REMOVE_TOKEN, player, slot);
+    }
+
+    public void freeze(int player, long millis) {
+        if (channel != null) event(FREEZE, player, (int) millis);
+    }
+
+    public void reshuffle() {
+        if (channel != null) event(RESHUFFLE);
+    }
+
+    public void claim(int player, int[] cards, boolean valid) {
+        if (channel == null) return;
+        synchronized (this) {
+            if (!begin(CLAIM)) return;
+            putVarint(player);
+            for (int card : cards)
+                putVarint(card);
+            putVarint(valid ? 1 : 0);
+        }
+    }
+
+    public void seed(long seed) {
+        if (channel == null) return;
+        synchronized (this) {
+            if (begin(SEED)) putVarLong((seed << 1) ^ (seed >> 63));
+        }
+    }
+
+    private synchronized void event(int type) {
+        begin(type);
+    }
+
+    private synchronized void event(int type, int a) {
+        if (begin(type)) putVarint(a);
+    }
+
+    private synchronized void event(int type, int a, int b) {
+        if (begin(type)) {
+            putVarint(a);
+            putVarint(b);
+        }
+    }
+
+    /**
+     * Starts writing an event (the caller must hold the journal lock).
+     *
+     * @return - false iff the journal is closed or failed.
+     */
+    private boolean begin(int type) {
+        if (buffer == null) return false;
+        if (buffer.remaining() < MAX_EVENT_BYTES) {
+            try {
+                bufferPosition += buffer.position();
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, bufferPosition, CHUNK_BYTES);
+            } catch (IOException e) {
+                buffer = null;
+                return false;
+            }
+        }
+        long now = clock.currentTimeMillis();
+        long delta = now - lastMillis;
+        lastMillis = now;
+        buffer.put((byte) type);
+        putVarLong((delta << 1) ^ (delta >> 63));
+        return true;
+    }
+
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Closes the journal, trimming the file to the bytes actually written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null || !channel.isOpen()) return;
+        long length = bufferPosition + (buffer == null ? 0 : buffer.position());
+        if (buffer != null) buffer.force();
+        buffer = null;
+        channel.truncate(length);
+        channel.close();
+    }
+
+    /**
+     * Sequentially reads the events of a journal file. After {@link #next()} returns an event type, its time and
+     * arguments are available in the public fields.
+     */
+    public static class Reader implements Closeable {
+
+        public final int featureCount;
+        public final int featureSize;
+        public final int rows;
+        public final int columns;
+        public final int players;
+
+        /**
+         * The time of the current event, and its arguments (unused arguments are left as is).
+         */
+        public long millis;
+        public int player;
+        public int slot;
+        public int card;
+        public final int[] cards = new int[3];
+        public boolean valid;
+        public long value;
+
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        public Reader(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 13 || buffer.getInt() != MAGIC || buffer.get() != VERSION)
+                throw new IOException(path + " is not a game journal");
+            millis = buffer.getLong();
+            featureCount = getVarint();
+            featureSize = getVarint();
+            rows = getVarint();
+            columns = getVarint();
+            players = getVarint();
+        }
+
+        /**
+         * Reads the next event.
+         *
+         * @return - the event type, or 0 at the end of the journal.
+         */
+        public int next() {
+            try {
+                if (!buffer.hasRemaining()) return 0;
+                int type = buffer.get();
+                if (type == 0) return 0; // the unwritten tail of a journal that was not closed
+                millis += unzigzag(getVarLong());
+                switch (type) {
+                    case PLACE_CARD:
+                        card = getVarint();
+                        slot = getVarint();
+                        break;
+                    case REMOVE_CARD:
+                        slot = getVarint();
+                        break;
+                    case PLACE_TOKEN:
+                    case REMOVE_TOKEN:
+                        player = getVarint();
+                        slot = getVarint();
+                        break;
+                    case CLAIM:
+                        player = getVarint();
+                        for (int i = 0; i < cards.length; ++i)
+                            cards[i] = getVarint();
+                        valid = getVarint() != 0;
+                        break;
+                    case FREEZE:
+                        player = getVarint();
+                        value = getVarint();
+                        break;
+                    case SEED:
+                        value = unzigzag(getVarLong());
+                        break;
+                    case RESHUFFLE:
+                        break;
+                    default:
+                        return 0;
+                }
+                return type;
+            } catch (BufferUnderflowException e) {
+                return 0; // a truncated last event
+            }
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int getVarint() {
+            return (int) getVarLong();
+        }
+
+        private long getVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package bguspl.set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Counters and histograms of the game engine hot paths, exposed over JMX (one instance per game).
+ * Recording only touches striped counters and never allocates, so it is cheap while nobody is reading.
+ */
+public class GameMetrics implements GameMetricsMXBean {
+
+    private static final long NANOS_PER_MICRO = 1000L;
+    private static final AtomicInteger games = new AtomicInteger();
+
+    private final LongAdder claimsSubmitted = new LongAdder();
+    private final LongAdder keyPressesDropped = new LongAdder();
+    private final LongAdder claimsProcessed = new LongAdder();
+    private final LongAdder validClaims = new LongAdder();
+    private final LongAdder invalidClaims = new LongAdder();
+    private final Histogram keyPressToVerdict = new Histogram();
+    private final Histogram tableLockHold = new Histogram();
+    private final Histogram dealerIteration = new Histogram();
+    private final Histogram claimQueueDepth = new Histogram();
+    private final LongAdder[] playerFreezeMillis;
+
+    /**
+     * The profiler of the game engine monitors (disabled unless Config::lockProfiling is set, except for the table
+     * hold times recorded here).
+     */
+    public final LockProfiler locks;
+
+    /**
+     * The name the metrics are registered under (null if not registered).
+     */
+    private ObjectName name;
+
+    public GameMetrics(Config config) {
+        playerFreezeMillis = new LongAdder[config.players];
+        for (int i = 0; i < playerFreezeMillis.length; ++i)
+            playerFreezeMillis[i] = new LongAdder();
+        locks = new LockProfiler(config.lockProfiling, tableLockHold::record);
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     *
+     * @param logger - the game logger (registration failures are logged and otherwise ignored).
+     */
+    public void register(Logger logger) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("bguspl.set:type=GameMetrics,name=game-" + games.incrementAndGet());
+            server.registerMBean(this, objectName);
+            name = objectName;
+        } catch (JMException | SecurityException e) {
+            logger.severe("cannot register game metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server (if registered).
+     */
+    public void unregister() {
+        if (name == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException ignored) {
+        }
+        name = null;
+    }
+
+    public void claimSubmitted() {
+        claimsSubmitted.increment();
+    }
+
+    public void keyPressDropped() {
+        keyPressesDropped.increment();
+    }
+
+    /**
+     * @param queueDepth - the number of claims pending when the claim was taken (including it).
+     */
+    public void claimProcessed(int queueDepth) {
+        claimsProcessed.increment();
+        claimQueueDepth.record(queueDepth);
+    }
+
+    /**
+     * @param valid          - true iff the claim was a legal set.
+     * @param keyPressNanos  - the System.nanoTime() of the key press completing the claim.
+     */
+    public void verdict(boolean valid, long keyPressNanos) {
+        (valid ? validClaims : invalidClaims).increment();
+        keyPressToVerdict.record(System.nanoTime() - keyPressNanos);
+    }
+
+    /**
+     * @param startNanos - the System.nanoTime() at the start of the iteration.
+     */
+    public void dealerIteration(long startNanos) {
+        dealerIteration.record(System.nanoTime() - startNanos);
+    }
+
+    public void playerFrozen(int player, long millis) {
+        playerFreezeMillis[player].add(millis);
+    }
+
+    @Override
+    public long getClaimsSubmitted() {
+        return claimsSubmitted.sum();
+    }
+
+    @Override
+    public long getKeyPressesDropped() {
+        return keyPressesDropped.sum();
+    }
+
+    @Override
+    public long getClaimsProcessed() {
+        return claimsProcessed.sum();
+    }
+
+    @Override
+    public long getValidClaims() {
+        return validClaims.sum();
+    }
+
+    @Override
+    public long getInvalidClaims() {
+        return invalidClaims.sum();
+    }
+
+    @Override
+    public HistogramSnapshot getKeyPressToVerdictMicros() {
+        return keyPressToVerdict.snapshot(NANOS_PER_MICRO);
+    }
+
+    @Override
+    public HistogramSnapshot getTableLockHoldMicros() {
+        return tableLockHold.snapshot(NANOS_PER_MICRO);
+    }
+
+    @Override
+    public HistogramSnapshot getDealerIterationMicros() {
+        return dealerIteration.snapshot(NANOS_PER_MICRO);
+    }
+
+    @Override
+    public HistogramSnapshot getClaimQueueDepth() {
+        return claimQueueDepth.snapshot(1);
+    }
+
+    @Override
+    public long[] getPlayerFreezeMillis() {
+        long[] millis = new long[playerFreezeMillis.length];
+        for (int i = 0; i < millis.length; ++i)
+            millis[i] = playerFreezeMillis[i].sum();
+        return millis;
+    }
+
+    @Override
+    public LockSnapshot[] getLocks() {
+        return locks.snapshot();
+    }
+
+    @Override
+    public String[] getLockOrderInversions() {
+        return locks.inversions();
+    }
+
+    @Override
+    public void reset() {
+        claimsSubmitted.reset();
+        keyPressesDropped.reset();
+        claimsProcessed.reset();
+        validClaims.reset();
+        invalidClaims.reset();
+        keyPressToVerdict.reset();
+        tableLockHold.reset();
+        dealerIteration.reset();
+        claimQueueDepth.reset();
+        for (LongAdder adder : playerFreezeMillis)
+            adder.reset();
+        locks.reset();
+    }
+}
@@ -0,0 +1,73 @@
+package bguspl.set;
+
+/**
+ * The JMX management interface of {@link GameMetrics}. Durations are reported in microseconds unless stated otherwise.
+ */
+public interface GameMetricsMXBean {
+
+    /**
+     * @return - the number of set claims submitted by players.
+     */
+    long getClaimsSubmitted();
+
+    /**
+     * @return - the number of key presses dropped because the player already had as many pending as it may.
+     */
+    long getKeyPressesDropped();
+
+    /**
+     * @return - the number of set claims taken by the dealer.
+     */
+    long getClaimsProcessed();
+
+    /**
+     * @return - the number of claims found to be a legal set.
+     */
+    long getValidClaims();
+
+    /**
+     * @return - the number of claims found not to be a legal set.
+     */
+    long getInvalidClaims();
+
+    /**
+     * @return - the time from the key press completing a claim until the dealer's verdict.
+     */
+    HistogramSnapshot getKeyPressToVerdictMicros();
+
+    /**
+     * @return - the time spent holding the table monitor.
+     */
+    HistogramSnapshot getTableLockHoldMicros();
+
+    /**
+     * @return - the duration of a dealer loop iteration.
+     */
+    HistogramSnapshot getDealerIterationMicros();
+
+    /**
+     * @return - the number of pending claims seen by the dealer whenever it takes one.
+     */
+    HistogramSnapshot getClaimQueueDepth();
+
+    /**
+     * @return - the total freeze time (in milliseconds) of each player.
+     */
+    long[] getPlayerFreezeMillis();
+
+    /**
+     * @return - the acquisitions, wait and hold times of each kind of engine monitor (all zero unless lock profiling
+     *           is enabled).
+     */
+    LockSnapshot[] getLocks();
+
+    /**
+     * @return - the lock-order inversions seen so far (when lock profiling is enabled).
+     */
+    String[] getLockOrderInversions();
+
+    /**
+     * Clears all the counters and histograms.
+     */
+    void reset();
+}
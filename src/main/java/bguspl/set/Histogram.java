@@ -0,0 +1,100 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of non-negative values with log-linear buckets (in the spirit of HdrHistogram): values below
+ * 16 get exact buckets, larger values are bucketed with a relative precision of 1/16. Recording never allocates.
+ */
+public class Histogram {
+
+    /**
+     * The number of bits of sub-bucket precision (16 sub-buckets per power of two).
+     */
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    private static int bucketOf(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+    }
+
+    private static long lowestValueOf(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int shift = bucket / SUB_COUNT - 1;
+        return (long) (SUB_COUNT + bucket % SUB_COUNT) << shift;
+    }
+
+    /**
+     * Records a value (negative values are recorded as 0).
+     *
+     * @param value - the value to record.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return - the number of values recorded so far.
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the (approximate) value at the given percentile.
+     *
+     * @param percentile - the percentile (between 0 and 100).
+     * @return - the lowest value of the bucket holding the percentile (0 if nothing was recorded).
+     */
+    public long valueAt(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; ++i)
+            total += counts[i] = buckets.get(i);
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) return lowestValueOf(i);
+        }
+        return 0;
+    }
+
+    /**
+     * Takes a snapshot of the histogram statistics.
+     *
+     * @param unit - the value each snapshot unit stands for (e.g. 1000 to report nanoseconds as microseconds).
+     * @return - the snapshot.
+     */
+    public HistogramSnapshot snapshot(long unit) {
+        long n = count.sum();
+        double mean = n == 0 ? 0 : (double) sum.sum() / n / unit;
+        return new HistogramSnapshot(n, mean, valueAt(50) / unit, valueAt(90) / unit, valueAt(99) / unit,
+                max.get() / unit);
+    }
+
+    /**
+     * Clears all the recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; ++i)
+            buckets.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+}
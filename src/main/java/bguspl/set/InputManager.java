@@ -5,6 +5,7 @@ import bguspl.set.ex.Player;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.util.Arrays;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -18,9 +19,17 @@ class InputManager extends KeyAdapter {
     int[] keyToSlot = new int[MAX_KEY_CODE + 1];
     private final Logger logger;
 
+    /**
+     * Every how many key presses one is logged (0 for none), and the number of key presses so far (only touched by
+     * the event dispatch thread).
+     */
+    private final int traceInterval;
+    private long presses;
+
     public InputManager(Logger logger, Config config, Player[] players) {
         this.players = players;
         this.logger = logger;
+        this.traceInterval = config.keyPressTraceInterval;
 
         // initialize the keys
         for (int player = 0; player < config.players; ++player)
@@ -43,8 +52,9 @@ class InputManager extends KeyAdapter {
         int keyCode = e.getKeyCode();
         int player = keyMap[keyCode] - 1;
         if (player >= 0){
-            logger.severe("key " + keyCode + " was pressed by player " + (player + 1));
             players[player].keyPressed(keyToSlot[keyCode]);
+            if (traceInterval > 0 && ++presses % traceInterval == 0 && logger.isLoggable(Level.INFO))
+                logger.info("key " + keyCode + " was pressed by player " + (player + 1) + " (key press " + presses + ")");
         }
     }
 }
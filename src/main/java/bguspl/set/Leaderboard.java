@@ -0,0 +1,577 @@
+package bguspl.set;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent store of game results: an append-only data file of checksummed game records, and an index file holding
+ * one fixed-size entry per player name (games, wins, points, rating and the offset of the player's latest record).
+ * Every record links to the previous record of each of its players, so the history of a player is read without a scan,
+ * and the top-K and rating queries only read the index.
+ * <p>
+ * Writers (threads or processes) are serialized by a lock on the index file. A record is appended to the data file
+ * before the index is updated, and the index header holds the length of the data it covers, so a record appended by a
+ * writer that died before updating the index is indexed (or, if torn, truncated) by the next writer.
+ * Usage (queries): Leaderboard file top [k] | history name [count] | rating name
+ */
+public class Leaderboard implements Closeable {
+
+    private static final int DATA_MAGIC = 0x5345544C;   // "SETL"
+    private static final int INDEX_MAGIC = 0x53455449;  // "SETI"
+    private static final int VERSION = 2;
+
+    /**
+     * The data header (magic, version) and the index header (magic, version, indexed data length, entry count).
+     */
+    private static final int DATA_HEADER_BYTES = 8;
+    static final int INDEX_HEADER_BYTES = 20;
+    private static final int INDEXED_LENGTH_POSITION = 8;
+
+    /**
+     * An index entry: the name (length byte and UTF-8 bytes), games, wins, points, rating and latest record offset.
+     */
+    private static final int NAME_BYTES = 47;
+    static final int ENTRY_BYTES = 1 + NAME_BYTES + 4 + 4 + 8 + 8 + 8;
+
+    /**
+     * The largest record accepted when reading (anything larger is taken as a torn or corrupt record).
+     */
+    private static final int MAX_RECORD_BYTES = 1 << 16;
+
+    public static final double INITIAL_RATING = 1500;
+    private static final double K_FACTOR = 32;
+
+    /**
+     * Threads of this process writing the same store take turns before taking the file lock, as file locks are held
+     * on behalf of the whole process.
+     */
+    private static final Map<Path, Object> monitors = new ConcurrentHashMap<>();
+
+    /**
+     * The standing of a player.
+     */
+    public static class Standing {
+
+        public final String name;
+        public final int games;
+        public final int wins;
+        public final long points;
+        public final double rating;
+
+        private Standing(String name, int games, int wins, long points, double rating) {
+            this.name = name;
+            this.games = games;
+            this.wins = wins;
+            this.points = points;
+            this.rating = rating;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-20s rating=%.0f games=%d wins=%d points=%d", name, rating, games, wins, points);
+        }
+    }
+
+    /**
+     * The result of a single game.
+     */
+    public static class GameResult {
+
+        public final long millis;
+        public final String[] names;
+        public final int[] scores;
+
+        /**
+         * The offsets of the previous records of the players (-1 for none), and their ratings before the game.
+         */
+        private final long[] previous;
+        private final double[] ratings;
+
+        private GameResult(long millis, String[] names, int[] scores, long[] previous, double[] ratings) {
+            this.millis = millis;
+            this.names = names;
+            this.scores = scores;
+            this.previous = previous;
+            this.ratings = ratings;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format("%tF %<tT", millis));
+            for (int i = 0; i < names.length; ++i)
+                sb.append(i == 0 ? " " : ", ").append(names[i]).append('=').append(scores[i]);
+            return sb.toString();
+        }
+    }
+
+    private final Object monitor;
+    private final FileChannel data;
+    private final FileChannel index;
+
+    /**
+     * The index as of the last time it was read (guarded by the monitor). Only reread when the indexed length changed.
+     */
+    private long indexedLength = -1;
+    private int entries;
+    private String[] names = new String[16];
+    private int[] games = new int[16];
+    private int[] wins = new int[16];
+    private long[] points = new long[16];
+    private double[] ratings = new double[16];
+    private long[] latest = new long[16];
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    private Leaderboard(Path path, FileChannel data, FileChannel index) {
+        monitor = monitors.computeIfAbsent(path, p -> new Object());
+        this.data = data;
+        this.index = index;
+    }
+
+    /**
+     * Opens (or creates) a store, completing the index if it does not cover the whole data file (a missing index
+     * file is rebuilt from the data file).
+     *
+     * @param path - the data file (the index is kept next to it, with an ".idx" suffix).
+     * @return - the store.
+     * @throws IOException - if the files cannot be opened or are not a leaderboard store.
+     */
+    public static Leaderboard open(Path path) throws IOException {
+        path = path.toAbsolutePath().normalize();
+        if (path.getParent() != null) path.getParent().toFile().mkdirs();
+        FileChannel data = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        FileChannel index;
+        try {
+            index = FileChannel.open(Paths.get(path + ".idx"), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+        Leaderboard leaderboard = new Leaderboard(path, data, index);
+        try {
+            leaderboard.locked(false, () -> {
+                leaderboard.initialize();
+                leaderboard.readIndex();
+                leaderboard.recover();
+            });
+        } catch (IOException e) {
+            leaderboard.close();
+            throw e;
+        }
+        return leaderboard;
+    }
+
+    /**
+     * Writes the headers of new files and checks the headers of existing ones (called holding the lock).
+     */
+    private void initialize() throws IOException {
+        if (data.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_BYTES).putInt(DATA_MAGIC).putInt(VERSION);
+            header.flip();
+            writeFully(data, header, 0);
+            data.force(true);
+        }
+        if (index.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_BYTES)
+                    .putInt(INDEX_MAGIC).putInt(VERSION).putLong(DATA_HEADER_BYTES).putInt(0);
+            header.flip();
+            writeFully(index, header, 0);
+            index.force(true);
+        }
+        ByteBuffer header = readFully(data, 0, DATA_HEADER_BYTES);
+        if (header.getInt() != DATA_MAGIC || header.getInt() != VERSION)
+            throw new IOException("not a leaderboard data file");
+        header = readFully(index, 0, INDEX_HEADER_BYTES);
+        if (header.getInt() != INDEX_MAGIC || header.getInt() != VERSION)
+            throw new IOException("not a leaderboard index file");
+    }
+
+    /**
+     * Appends the result of a game and updates the standings of its players.
+     *
+     * @param millis - the time the game ended at.
+     * @param names  - the names of the players.
+     * @param scores - the scores of the players.
+     * @throws IOException - if the store cannot be written.
+     */
+    public void append(long millis, String[] names, int[] scores) throws IOException {
+        if (names.length != scores.length || names.length == 0 || names.length > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("invalid number of players: " + names.length);
+        String[] keys = new String[names.length];
+        for (int i = 0; i < names.length; ++i) {
+            keys[i] = key(names[i]);
+            for (int j = 0; j < i; ++j)
+                if (keys[i].equals(keys[j])) throw new IllegalArgumentException("duplicate player name: " + names[i]);
+        }
+
+        locked(false, () -> {
+            try {
+                readIndex();
+                recover();
+
+                long[] previous = new long[keys.length];
+                double[] before = new double[keys.length];
+                for (int i = 0; i < keys.length; ++i) {
+                    Integer id = ids.get(keys[i]);
+                    previous[i] = id == null ? -1 : latest[id];
+                    before[i] = id == null ? INITIAL_RATING : ratings[id];
+                }
+                GameResult result = new GameResult(millis, keys, scores, previous, before);
+                long offset = indexedLength;
+                ByteBuffer record = encode(result);
+                writeFully(data, record, offset);
+                data.force(false);
+                apply(result, offset, offset + record.limit());
+            } catch (IOException e) {
+                indexedLength = -1; // the cached index may be ahead of the file, so read it again next time
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * @param k - the number of players.
+     * @return - the k players of the highest rating, best first.
+     * @throws IOException - if the store cannot be read.
+     */
+    public List<Standing> top(int k) throws IOException {
+        synchronized (monitor) {
+            locked(true, this::readIndex);
+            PriorityQueue<Integer> best = new PriorityQueue<>(Math.max(1, k), (a, b) -> Double.compare(ratings[a], ratings[b]));
+            for (int id = 0; id < entries && k > 0; ++id) {
+                if (best.size() < k) best.add(id);
+                else if (ratings[id] > ratings[best.peek()]) {
+                    best.poll();
+                    best.add(id);
+                }
+            }
+            List<Standing> standings = new ArrayList<>(best.size());
+            while (!best.isEmpty())
+                standings.add(standing(best.poll()));
+            Collections.reverse(standings);
+            return standings;
+        }
+    }
+
+    /**
+     * @param name - the name of the player.
+     * @return - the standing of the player (null if the player never played).
+     * @throws IOException - if the store cannot be read.
+     */
+    public Standing standing(String name) throws IOException {
+        synchronized (monitor) {
+            locked(true, this::readIndex);
+            Integer id = ids.get(key(name));
+            return id == null ? null : standing(id);
+        }
+    }
+
+    /**
+     * @param name  - the name of the player.
+     * @param count - the maximal number of games to return.
+     * @return - the latest games of the player, newest first.
+     * @throws IOException - if the store cannot be read.
+     */
+    public List<GameResult> history(String name, int count) throws IOException {
+        String key = key(name);
+        List<GameResult> results = new ArrayList<>();
+        locked(true, () -> {
+            readIndex();
+            Integer id = ids.get(key);
+            long offset = id == null ? -1 : latest[id];
+            while (offset >= 0 && results.size() < count) {
+                GameResult result = decode(offset, indexedLength);
+                if (result == null) throw new IOException("corrupt leaderboard record at " + offset);
+                int player = Arrays.asList(result.names).indexOf(key);
+                if (player < 0) throw new IOException("corrupt leaderboard record at " + offset);
+                results.add(result);
+                offset = result.previous[player];
+            }
+        });
+        return results;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * An action on the store, run holding its lock.
+     */
+    private interface LockedAction {
+        void run() throws IOException;
+    }
+
+    /**
+     * Runs an action holding the monitor of the store (for the threads of this process) and the lock on the index
+     * file (for other processes).
+     *
+     * @param shared - true to take a shared (read) lock, false to take an exclusive (write) lock.
+     * @param action - the action.
+     * @throws IOException - if the lock cannot be taken, or the action fails.
+     */
+    private void locked(boolean shared, LockedAction action) throws IOException {
+        synchronized (monitor) {
+            FileLock lock = index.lock(0, Long.MAX_VALUE, shared);
+            try {
+                action.run();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private Standing standing(int id) {
+        return new Standing(names[id], games[id], wins[id], points[id], ratings[id]);
+    }
+
+    /**
+     * @return - the name as stored (truncated to the bytes an index entry has room for).
+     */
+    private static String key(String name) {
+        String key = name.trim();
+        while (key.getBytes(StandardCharsets.UTF_8).length > NAME_BYTES)
+            key = key.substring(0, key.length() - 1);
+        return key;
+    }
+
+    /**
+     * Rereads the index if another writer changed it since it was last read (called holding the lock).
+     */
+    private void readIndex() throws IOException {
+        ByteBuffer header = readFully(index, INDEXED_LENGTH_POSITION, INDEX_HEADER_BYTES - INDEXED_LENGTH_POSITION);
+        long length = header.getLong();
+        int count = header.getInt();
+        if (length == indexedLength && count == entries) return;
+
+        ensureCapacity(count);
+        ids.clear();
+        ByteBuffer buffer = readFully(index, INDEX_HEADER_BYTES, (long) count * ENTRY_BYTES);
+        byte[] name = new byte[NAME_BYTES];
+        for (int id = 0; id < count; ++id) {
+            int nameLength = buffer.get();
+            buffer.get(name);
+            names[id] = new String(name, 0, nameLength, StandardCharsets.UTF_8);
+            games[id] = buffer.getInt();
+            wins[id] = buffer.getInt();
+            points[id] = buffer.getLong();
+            ratings[id] = buffer.getDouble();
+            latest[id] = buffer.getLong();
+            ids.put(names[id], id);
+        }
+        indexedLength = length;
+        entries = count;
+    }
+
+    /**
+     * Indexes the records appended after the indexed length by writers that did not get to update the index, and
+     * truncates a torn record at the end of the data file (called holding the lock exclusively).
+     */
+    private void recover() throws IOException {
+        long size = data.size();
+        while (indexedLength < size) {
+            GameResult result = decode(indexedLength, size);
+            if (result == null) {
+                data.truncate(indexedLength);
+                return;
+            }
+            apply(result, indexedLength, indexedLength + recordBytes(result));
+        }
+    }
+
+    /**
+     * Updates the standings of the players of a game and writes the changed index entries, then the new indexed
+     * length. Players whose entry already covers the record (a writer died in the middle of the update) are skipped;
+     * the rating changes are computed from the ratings before the game, as stored in the record, so the other players
+     * get the same changes as if the update had not been interrupted.
+     */
+    private void apply(GameResult result, long offset, long end) throws IOException {
+        int n = result.names.length;
+        int[] players = new int[n];
+        int best = Integer.MIN_VALUE;
+        for (int i = 0; i < n; ++i) {
+            Integer id = ids.get(result.names[i]);
+            if (id == null) {
+                ensureCapacity(entries + 1);
+                id = entries++;
+                names[id] = result.names[i];
+                games[id] = wins[id] = 0;
+                points[id] = 0;
+                ratings[id] = INITIAL_RATING;
+                latest[id] = -1;
+                ids.put(names[id], id);
+            }
+            players[i] = id;
+            best = Math.max(best, result.scores[i]);
+        }
+
+        // multi-player Elo: every player is rated against every other player of the game
+        double[] deltas = new double[n];
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < n; ++j) {
+                if (i == j) continue;
+                double expected = 1 / (1 + Math.pow(10, (result.ratings[j] - result.ratings[i]) / 400));
+                double actual = Integer.compare(result.scores[i], result.scores[j]) * 0.5 + 0.5;
+                deltas[i] += K_FACTOR / (n - 1) * (actual - expected);
+            }
+
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES);
+        for (int i = 0; i < n; ++i) {
+            int id = players[i];
+            if (latest[id] >= offset) continue;
+            ++games[id];
+            if (result.scores[i] == best) ++wins[id];
+            points[id] += result.scores[i];
+            ratings[id] += deltas[i];
+            latest[id] = offset;
+
+            byte[] name = names[id].getBytes(StandardCharsets.UTF_8);
+            entry.clear();
+            entry.put((byte) name.length).put(name).position(1 + NAME_BYTES);
+            entry.putInt(games[id]).putInt(wins[id]).putLong(points[id]).putDouble(ratings[id]).putLong(latest[id]);
+            entry.flip();
+            writeFully(index, entry, INDEX_HEADER_BYTES + (long) id * ENTRY_BYTES);
+        }
+        index.force(false);
+
+        ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_BYTES - INDEXED_LENGTH_POSITION).putLong(end).putInt(entries);
+        header.flip();
+        writeFully(index, header, INDEXED_LENGTH_POSITION);
+        index.force(false);
+        indexedLength = end;
+    }
+
+    private void ensureCapacity(int count) {
+        if (count <= names.length) return;
+        int capacity = Math.max(count, names.length * 2);
+        names = Arrays.copyOf(names, capacity);
+        games = Arrays.copyOf(games, capacity);
+        wins = Arrays.copyOf(wins, capacity);
+        points = Arrays.copyOf(points, capacity);
+        ratings = Arrays.copyOf(ratings, capacity);
+        latest = Arrays.copyOf(latest, capacity);
+    }
+
+    /**
+     * A record is the payload length, the payload (end time, player count, then the name, score, previous record
+     * offset and rating before the game of every player) and the CRC-32 of the payload.
+     */
+    private static ByteBuffer encode(GameResult result) {
+        ByteBuffer buffer = ByteBuffer.allocate(recordBytes(result));
+        buffer.putInt(buffer.capacity() - 8);
+        buffer.putLong(result.millis);
+        buffer.put((byte) result.names.length);
+        for (int i = 0; i < result.names.length; ++i) {
+            byte[] name = result.names[i].getBytes(StandardCharsets.UTF_8);
+            buffer.put((byte) name.length).put(name);
+            buffer.putInt(result.scores[i]);
+            buffer.putLong(result.previous[i]);
+            buffer.putDouble(result.ratings[i]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, buffer.position() - 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int recordBytes(GameResult result) {
+        int bytes = 4 + 8 + 1 + 4;
+        for (String name : result.names)
+            bytes += 1 + name.getBytes(StandardCharsets.UTF_8).length + 4 + 8 + 8;
+        return bytes;
+    }
+
+    /**
+     * @return - the record at the given offset, or null if it is torn, corrupt or extends beyond the limit.
+     */
+    private GameResult decode(long offset, long limit) throws IOException {
+        if (offset + 4 > limit) return null;
+        int length = readFully(data, offset, 4).getInt();
+        if (length < 9 || length > MAX_RECORD_BYTES || offset + 8 + length > limit) return null;
+        ByteBuffer buffer = readFully(data, offset + 4, length + 4);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, length);
+        if (buffer.getInt(length) != (int) crc.getValue()) return null;
+
+        long millis = buffer.getLong();
+        int n = buffer.get();
+        String[] names = new String[n];
+        int[] scores = new int[n];
+        long[] previous = new long[n];
+        double[] ratings = new double[n];
+        for (int i = 0; i < n; ++i) {
+            byte[] name = new byte[buffer.get()];
+            buffer.get(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+            scores[i] = buffer.getInt();
+            previous[i] = buffer.getLong();
+            ratings[i] = buffer.getDouble();
+        }
+        return new GameResult(millis, names, scores, previous, ratings);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, long bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) bytes);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position());
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: Leaderboard file top [k] | history name [count] | rating name");
+            return;
+        }
+        try (Leaderboard leaderboard = open(Paths.get(args[0]))) {
+            switch (args[1]) {
+                case "top":
+                    int k = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+                    int rank = 0;
+                    for (Standing standing : leaderboard.top(k))
+                        System.out.printf("%3d. %s%n", ++rank, standing);
+                    break;
+                case "history":
+                    int count = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+                    for (GameResult result : leaderboard.history(args[2], count))
+                        System.out.println(result);
+                    break;
+                case "rating":
+                    Standing standing = leaderboard.standing(args[2]);
+                    System.out.println(standing == null ? args[2] + " never played" : standing);
+                    break;
+                default:
+                    System.out.println("unknown query: " + args[1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Profiles the game engine monitors (the table, keyDealer and the players' keyPlayer): the number of acquisitions and
+ * the time spent waiting for and holding each kind of monitor. It also remembers the order in which the kinds of
+ * monitors are nested by each thread, and reports a lock-order inversion whenever two kinds are seen nested both ways.
+ * Profiling is opt-in (see Config::lockProfiling); the disabled profiler does nothing beyond reading the time.
+ *
+ * A critical section is instrumented by running it through the profiler:
+ * <pre>
+ *     env.locks.run(LockProfiler.TABLE, table, () -> ...);
+ * </pre>
+ */
+public class LockProfiler {
+
+    /**
+     * The kinds of monitors profiled (all the players' keyPlayer monitors are profiled together).
+     */
+    public static final int TABLE = 0;
+    public static final int DEALER = 1;
+    public static final int PLAYER = 2;
+    private static final String[] NAMES = {"table", "keyDealer", "keyPlayer"};
+    private static final int KINDS = NAMES.length;
+
+    /**
+     * The maximal nesting depth tracked per thread.
+     */
+    private static final int MAX_DEPTH = 8;
+
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    /**
+     * A profiler that records nothing.
+     */
+    public static final LockProfiler DISABLED = new LockProfiler(false);
+
+    private final boolean enabled;
+
+    /**
+     * Told how long the table was held (in nanoseconds) whenever it is released, also when profiling is disabled.
+     */
+    private final LongConsumer tableHolds;
+    private final LongAdder[] acquisitions = new LongAdder[KINDS];
+    private final Histogram[] waits = new Histogram[KINDS];
+    private final Histogram[] holds = new Histogram[KINDS];
+
+    /**
+     * For each pair of kinds (outer * KINDS + inner), whether a thread was seen acquiring inner while holding outer.
+     */
+    private final AtomicIntegerArray nested = new AtomicIntegerArray(KINDS * KINDS);
+    private final List<String> inversions = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * The kinds of monitors held by each thread: the nesting depth, followed by the kinds from the outermost in.
+     */
+    private final ThreadLocal<int[]> held = ThreadLocal.withInitial(() -> new int[MAX_DEPTH + 1]);
+
+    /**
+     * @param enabled - true iff the profiler should record anything.
+     */
+    public LockProfiler(boolean enabled) {
+        this(enabled, nanos -> {});
+    }
+
+    /**
+     * @param enabled    - true iff the profiler should record anything.
+     * @param tableHolds - told how long the table was held whenever it is released.
+     */
+    public LockProfiler(boolean enabled, LongConsumer tableHolds) {
+        this.enabled = enabled;
+        this.tableHolds = tableHolds;
+        for (int kind = 0; kind < KINDS; ++kind) {
+            acquisitions[kind] = new LongAdder();
+            waits[kind] = new Histogram();
+            holds[kind] = new Histogram();
+        }
+    }
+
+    /**
+     * Runs a critical section holding a monitor, and profiles the monitor (the release is recorded even if the section
+     * throws).
+     *
+     * @param kind    - the kind of monitor.
+     * @param monitor - the monitor to hold.
+     * @param section - the critical section.
+     */
+    public void run(int kind, Object monitor, Runnable section) {
+        long requested = request(kind);
+        synchronized (monitor) {
+            long acquired = acquired(kind, requested);
+            try {
+                section.run();
+            } finally {
+                released(kind, acquired);
+            }
+        }
+    }
+
+    /**
+     * Called right before entering a monitor.
+     *
+     * @param kind - the kind of monitor.
+     * @return - the time of the request (to be passed to acquired).
+     */
+    private long request(int kind) {
+        if (!enabled) return 0;
+        int[] stack = held.get();
+        for (int i = 1; i <= Math.min(stack[0], MAX_DEPTH); ++i) {
+            int outer = stack[i];
+            if (outer == kind) continue; // re-entered, or another monitor of the same kind
+            if (nested.get(outer * KINDS + kind) == 0 && nested.compareAndSet(outer * KINDS + kind, 0, 1)
+                    && nested.get(kind * KINDS + outer) != 0)
+                inversions.add(NAMES[outer] + " -> " + NAMES[kind] + " (also taken as " + NAMES[kind] + " -> "
+                        + NAMES[outer] + ") by " + Thread.currentThread().getName());
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Called right after entering a monitor.
+     *
+     * @param kind      - the kind of monitor.
+     * @param requested - the value returned by request.
+     * @return - the time of the acquisition (System.nanoTime(), also when profiling is disabled).
+     */
+    private long acquired(int kind, long requested) {
+        long now = System.nanoTime();
+        if (!enabled) return now;
+        acquisitions[kind].increment();
+        waits[kind].record(now - requested);
+        int[] stack = held.get();
+        if (++stack[0] <= MAX_DEPTH) stack[stack[0]] = kind;
+        return now;
+    }
+
+    /**
+     * Called right before leaving a monitor.
+     *
+     * @param kind     - the kind of monitor.
+     * @param acquired - the value returned by acquired.
+     */
+    private void released(int kind, long acquired) {
+        long holdNanos = System.nanoTime() - acquired;
+        if (kind == TABLE) tableHolds.accept(holdNanos);
+        if (!enabled) return;
+        holds[kind].record(holdNanos);
+        --held.get()[0];
+    }
+
+    /**
+     * @return - true iff the profiler records anything.
+     */
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * @return - the statistics of each kind of monitor.
+     */
+    public LockSnapshot[] snapshot() {
+        LockSnapshot[] snapshots = new LockSnapshot[KINDS];
+        for (int kind = 0; kind < KINDS; ++kind)
+            snapshots[kind] = new LockSnapshot(NAMES[kind], acquisitions[kind].sum(),
+                    waits[kind].snapshot(NANOS_PER_MICRO), holds[kind].snapshot(NANOS_PER_MICRO));
+        return snapshots;
+    }
+
+    /**
+     * @return - a description of each lock-order inversion seen.
+     */
+    public String[] inversions() {
+        synchronized (inversions) {
+            return inversions.toArray(new String[0]);
+        }
+    }
+
+    /**
+     * @return - a human readable report of the statistics and the lock-order inversions.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder("lock profile (microseconds):");
+        for (LockSnapshot snapshot : snapshot())
+            sb.append(System.lineSeparator()).append("  ").append(snapshot);
+        String[] found = inversions();
+        if (found.length == 0) sb.append(System.lineSeparator()).append("  no lock-order inversions");
+        for (String inversion : found)
+            sb.append(System.lineSeparator()).append("  lock-order inversion: ").append(inversion);
+        return sb.toString();
+    }
+
+    /**
+     * Clears the statistics (the nesting orders and inversions seen are kept).
+     */
+    public void reset() {
+        for (int kind = 0; kind < KINDS; ++kind) {
+            acquisitions[kind].reset();
+            waits[kind].reset();
+            holds[kind].reset();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package bguspl.set;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable summary of the profile of one kind of monitor (exposed over JMX as composite data).
+ */
+public class LockSnapshot {
+
+    private final String name;
+    private final long acquisitions;
+    private final HistogramSnapshot waitMicros;
+    private final HistogramSnapshot holdMicros;
+
+    @ConstructorProperties({"name", "acquisitions", "waitMicros", "holdMicros"})
+    public LockSnapshot(String name, long acquisitions, HistogramSnapshot waitMicros, HistogramSnapshot holdMicros) {
+        this.name = name;
+        this.acquisitions = acquisitions;
+        this.waitMicros = waitMicros;
+        this.holdMicros = holdMicros;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    public HistogramSnapshot getWaitMicros() {
+        return waitMicros;
+    }
+
+    public HistogramSnapshot getHoldMicros() {
+        return holdMicros;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": acquisitions=" + acquisitions + " wait [" + waitMicros + "] hold [" + holdMicros + "]";
+    }
+}
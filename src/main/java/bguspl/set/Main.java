@@ -6,6 +6,8 @@ import bguspl.set.ex.Table;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -23,6 +25,11 @@ public class Main {
     private static boolean xButtonPressed = false;
     private static Logger logger;
 
+    /**
+     * The maximal number of log records waiting to be written to the log file.
+     */
+    private static final int LOG_RING_CAPACITY = 8192;
+
     public static void xButtonPressed() throws InterruptedException {
         if (logger != null) logger.severe("exit button pressed");
         xButtonPressed = true;
@@ -55,9 +62,16 @@ public class Main {
             if (config.humanPlayers > 0)
                 logger.severe("warning: running with human players with no user interface");
         }
-        ui = new UserInterfaceDecorator(logger, util, ui);
+        GameEventPublisher events = config.eventBufferSize > 0 ? new GameEventPublisher(logger, config) : null;
+        ui = UserInterfaceDecorator.build(logger, config, util, ui, events);
 
-        Env env = new Env(logger, config, ui, util);
+        GameMetrics metrics = new GameMetrics(config);
+        metrics.register(logger);
+        GameClock clock = config.simulatedTime ? new SimulatedGameClock() : new RealGameClock();
+        GameJournal journal = GameJournal.open(logger, config, clock);
+        GameAnalytics analytics = new GameAnalytics(config, clock);
+        analytics.register(logger);
+        Env env = new Env(logger, config, ui, util, metrics, journal, clock, analytics, events);
 
         // create the game entities
         Table table = new Table(env);
@@ -79,6 +93,15 @@ public class Main {
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed) env.ui.dispose();
+            if (env.locks.enabled()) logger.info(env.locks.report());
+            logger.info(analytics.getReport());
+            metrics.unregister();
+            analytics.unregister();
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.severe("cannot close game journal: " + e.getMessage());
+            }
             for (Handler h : logger.getHandlers()) h.flush();
         }
     }
@@ -98,7 +121,7 @@ public class Main {
 
         java.util.logging.Logger logger = java.util.logging.Logger.getLogger("SetGameLogger");
         logger.setUseParentHandlers(false);
-        logger.addHandler(handler);
+        logger.addHandler(new AsyncLogHandler(handler, LOG_RING_CAPACITY));
         setLoggerLevelAndFormat(logger, Level.ALL, "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
 
         return logger;
@@ -106,15 +129,40 @@ public class Main {
 
     public static void setLoggerLevelAndFormat(Logger logger, Level level, String format) {
         Handler[] handlers = logger.getHandlers();
-        if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
-            // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
-            @Override
-            public synchronized String format(LogRecord lr) {
-                return String.format(format, new Date(lr.getMillis()),
-                        lr.getLevel().getLocalizedName(), lr.getMessage()
-                );
-            }
-        }));
+        if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new GameLogFormatter(format)));
         logger.setLevel(level);
     }
+
+    /**
+     * Formats log records according to the configured format string, reusing the same timestamp and buffer objects
+     * for every record. Handlers serialize their calls to the formatter (and the asynchronous handler only calls it from
+     * its writer thread), so no additional locking is needed. Parameters are substituted into the message and a thrown
+     * exception's stack trace follows it.
+     */
+    private static class GameLogFormatter extends Formatter {
+
+        // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
+        private final String format;
+        private final Date timestamp = new Date();
+        private final StringBuilder buffer = new StringBuilder();
+        private final java.util.Formatter formatter = new java.util.Formatter(buffer);
+
+        private GameLogFormatter(String format) {
+            this.format = format;
+        }
+
+        @Override
+        public String format(LogRecord lr) {
+            timestamp.setTime(lr.getMillis());
+            buffer.setLength(0);
+            String message = lr.getParameters() == null ? lr.getMessage() : formatMessage(lr);
+            formatter.format(format, timestamp, lr.getLevel().getLocalizedName(), message);
+            if (lr.getThrown() != null) {
+                StringWriter trace = new StringWriter();
+                lr.getThrown().printStackTrace(new PrintWriter(trace, true));
+                buffer.append(trace);
+            }
+            return buffer.toString();
+        }
+    }
 }
@@ -0,0 +1,33 @@
+package bguspl.set;
+
+/**
+ * A game clock that follows the system time.
+ */
+public class RealGameClock implements GameClock {
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (millis > 0) Thread.sleep(millis);
+    }
+
+    @Override
+    public void await(Object monitor, long millis) throws InterruptedException {
+        monitor.wait(Math.max(0, millis));
+    }
+
+    @Override
+    public void wake(Object monitor) {
+        monitor.notifyAll();
+    }
+
+    @Override
+    public void register() {}
+
+    @Override
+    public void unregister() {}
+}
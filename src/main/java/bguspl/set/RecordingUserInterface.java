@@ -0,0 +1,331 @@
+package bguspl.set;
+
+import java.util.Arrays;
+
+/**
+ * A user interface that records every call, with its System.nanoTime(), into a preallocated ring of primitive records
+ * (for tests and load tests: recording never allocates and takes a short critical section). When the ring wraps around,
+ * the oldest record is folded into a base board before it is overwritten, so the last capacity calls are kept and the
+ * board can be reconstructed as of any of them, however many calls were made before.
+ */
+public class RecordingUserInterface implements UserInterface {
+
+    private static final GameEvent.Type[] TYPES = GameEvent.Type.values();
+
+    /**
+     * The ring of records (the capacity is a power of two, so a sequence number is mapped to an index by masking).
+     * A record is the call type, its player, slot and card (or 1 for a countdown in warning mode), its milliseconds,
+     * score or winners (as a bit mask of the players), and the time it was made at.
+     */
+    private final int mask;
+    private final byte[] types;
+    private final int[] players;
+    private final int[] slots;
+    private final int[] cards;
+    private final long[] values;
+    private final long[] nanos;
+
+    /**
+     * The number of calls recorded so far, and the board as of the oldest call still in the ring (guarded by this).
+     */
+    private long recorded;
+    private final Board base;
+    private volatile boolean disposed;
+
+    /**
+     * The state of the board as shown by the user interface.
+     */
+    public static class Board {
+
+        private final int tableSize;
+        private final int[] slotToCard;
+        private final boolean[] tokens;
+        private final int[] scores;
+        private final long[] freezes;
+        private long countdown;
+        private boolean warn;
+        private long elapsed;
+        private long winners;
+
+        private Board(int tableSize, int players) {
+            this.tableSize = tableSize;
+            slotToCard = new int[tableSize];
+            Arrays.fill(slotToCard, -1);
+            tokens = new boolean[players * tableSize];
+            scores = new int[players];
+            freezes = new long[players];
+        }
+
+        private Board(Board other) {
+            tableSize = other.tableSize;
+            slotToCard = other.slotToCard.clone();
+            tokens = other.tokens.clone();
+            scores = other.scores.clone();
+            freezes = other.freezes.clone();
+            countdown = other.countdown;
+            warn = other.warn;
+            elapsed = other.elapsed;
+            winners = other.winners;
+        }
+
+        private void apply(GameEvent.Type type, int player, int slot, int card, long value) {
+            switch (type) {
+                case PLACE_CARD: slotToCard[slot] = card; break;
+                case REMOVE_CARD: slotToCard[slot] = -1; break;
+                case PLACE_TOKEN: tokens[player * tableSize + slot] = true; break;
+                case REMOVE_TOKENS: Arrays.fill(tokens, false); break;
+                case REMOVE_SLOT_TOKENS:
+                    for (int i = slot; i < tokens.length; i += tableSize)
+                        tokens[i] = false;
+                    break;
+                case REMOVE_TOKEN: tokens[player * tableSize + slot] = false; break;
+                case COUNTDOWN: countdown = value; warn = card == 1; break;
+                case ELAPSED: elapsed = value; break;
+                case FREEZE: freezes[player] = value; break;
+                case SCORE: scores[player] = (int) value; break;
+                case WINNERS: winners = value; break;
+            }
+        }
+
+        /**
+         * @return - the card shown in a slot (-1 if none).
+         */
+        public int card(int slot) {
+            return slotToCard[slot];
+        }
+
+        public int countCards() {
+            int count = 0;
+            for (int card : slotToCard)
+                if (card != -1) ++count;
+            return count;
+        }
+
+        public boolean hasToken(int player, int slot) {
+            return tokens[player * tableSize + slot];
+        }
+
+        public int score(int player) {
+            return scores[player];
+        }
+
+        public long freeze(int player) {
+            return freezes[player];
+        }
+
+        public long countdown() {
+            return countdown;
+        }
+
+        public boolean warn() {
+            return warn;
+        }
+
+        public long elapsed() {
+            return elapsed;
+        }
+
+        /**
+         * @return - the winners announced (none if the game did not end).
+         */
+        public int[] winners() {
+            return playersOf(winners);
+        }
+    }
+
+    /**
+     * @return - the players of a bit mask, in increasing order.
+     */
+    private static int[] playersOf(long mask) {
+        int[] players = new int[Long.bitCount(mask)];
+        for (int i = 0; i < players.length; ++i, mask &= mask - 1)
+            players[i] = Long.numberOfTrailingZeros(mask);
+        return players;
+    }
+
+    /**
+     * @param config   - the game configuration (for the table size and the number of players, at most 64).
+     * @param capacity - the number of calls to keep (rounded up to a power of two).
+     */
+    public RecordingUserInterface(Config config, int capacity) {
+        if (config.players > Long.SIZE)
+            throw new IllegalArgumentException("cannot record more than " + Long.SIZE + " players");
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        types = new byte[size];
+        players = new int[size];
+        slots = new int[size];
+        cards = new int[size];
+        values = new long[size];
+        nanos = new long[size];
+        base = new Board(config.tableSize, config.players);
+    }
+
+    private synchronized void record(GameEvent.Type type, int player, int slot, int card, long value) {
+        long time = System.nanoTime();
+        if (disposed) return;
+        int i = (int) recorded & mask;
+        if (recorded > mask) base.apply(TYPES[types[i]], players[i], slots[i], cards[i], values[i]);
+        types[i] = (byte) type.ordinal();
+        players[i] = player;
+        slots[i] = slot;
+        cards[i] = card;
+        values[i] = value;
+        nanos[i] = time;
+        ++recorded;
+    }
+
+    /**
+     * @return - the number of calls recorded so far (the sequence number of the next call).
+     */
+    public synchronized long recorded() {
+        return recorded;
+    }
+
+    /**
+     * @return - the sequence number of the oldest call still kept.
+     */
+    public synchronized long oldest() {
+        return Math.max(0, recorded - mask - 1);
+    }
+
+    /**
+     * @param sequence - the sequence number of a call (between oldest() and recorded() - 1).
+     * @return - the call.
+     */
+    public synchronized GameEvent event(long sequence) {
+        int i = index(sequence);
+        int player = players[i], slot = slots[i], card = cards[i];
+        long value = values[i];
+        switch (TYPES[types[i]]) {
+            case PLACE_CARD: return GameEvent.placeCard(card, slot);
+            case REMOVE_CARD: return GameEvent.removeCard(slot);
+            case PLACE_TOKEN: return GameEvent.placeToken(player, slot);
+            case REMOVE_TOKENS: return GameEvent.removeTokens();
+            case REMOVE_SLOT_TOKENS: return GameEvent.removeTokens(slot);
+            case REMOVE_TOKEN: return GameEvent.removeToken(player, slot);
+            case COUNTDOWN: return GameEvent.countdown(value, card == 1);
+            case ELAPSED: return GameEvent.elapsed(value);
+            case FREEZE: return GameEvent.freeze(player, value);
+            case SCORE: return GameEvent.score(player, (int) value);
+            default: return GameEvent.winners(playersOf(value));
+        }
+    }
+
+    /**
+     * @param sequence - the sequence number of a call (between oldest() and recorded() - 1).
+     * @return - the System.nanoTime() the call was made at.
+     */
+    public synchronized long nanos(long sequence) {
+        return nanos[index(sequence)];
+    }
+
+    /**
+     * Reconstructs the board as of a call.
+     *
+     * @param sequence - the number of calls to take into account (between oldest() and recorded()).
+     * @return - the board as it was shown after the first sequence calls.
+     */
+    public synchronized Board boardAt(long sequence) {
+        if (sequence != recorded) index(sequence);
+        Board board = new Board(base);
+        for (long s = oldest(); s < sequence; ++s) {
+            int i = (int) s & mask;
+            board.apply(TYPES[types[i]], players[i], slots[i], cards[i], values[i]);
+        }
+        return board;
+    }
+
+    /**
+     * @return - the board as it is shown now.
+     */
+    public synchronized Board board() {
+        return boardAt(recorded);
+    }
+
+    /**
+     * Reconstructs the board as of a point in time.
+     *
+     * @param nanoTime - a System.nanoTime() (not before the oldest call kept).
+     * @return - the board as it was shown at that time.
+     */
+    public synchronized Board boardAtNanos(long nanoTime) {
+        long sequence = oldest();
+        while (sequence < recorded && nanos[(int) sequence & mask] - nanoTime <= 0)
+            ++sequence;
+        return boardAt(sequence);
+    }
+
+    private int index(long sequence) {
+        if (sequence < oldest() || sequence >= recorded)
+            throw new IllegalArgumentException("call " + sequence + " is not kept (kept: " + oldest() + " to " +
+                    (recorded - 1) + ")");
+        return (int) sequence & mask;
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        record(GameEvent.Type.PLACE_CARD, -1, slot, card, 0);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        record(GameEvent.Type.REMOVE_CARD, -1, slot, -1, 0);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        record(GameEvent.Type.PLACE_TOKEN, player, slot, -1, 0);
+    }
+
+    @Override
+    public void removeTokens() {
+        record(GameEvent.Type.REMOVE_TOKENS, -1, -1, -1, 0);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        record(GameEvent.Type.REMOVE_SLOT_TOKENS, -1, slot, -1, 0);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        record(GameEvent.Type.REMOVE_TOKEN, player, slot, -1, 0);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        record(GameEvent.Type.COUNTDOWN, -1, -1, warn ? 1 : 0, millies);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        record(GameEvent.Type.ELAPSED, -1, -1, -1, millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        record(GameEvent.Type.FREEZE, player, -1, -1, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        record(GameEvent.Type.SCORE, player, -1, -1, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        long winners = 0;
+        for (int player : players)
+            winners |= 1L << player;
+        record(GameEvent.Type.WINNERS, -1, -1, -1, winners);
+    }
+
+    /**
+     * Stops recording (the calls recorded so far are kept).
+     */
+    @Override
+    public void dispose() {
+        disposed = true;
+    }
+}
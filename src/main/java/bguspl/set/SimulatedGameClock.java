@@ -0,0 +1,153 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A discrete-event game clock: game time moves along with the system time, but as soon as every registered game
+ * thread is sleeping or waiting, it jumps forward to the earliest pending deadline and wakes the threads that were
+ * waiting for it. Timeout-heavy games therefore run as fast as the threads can process events.
+ */
+public class SimulatedGameClock implements GameClock {
+
+    /**
+     * A registered thread that is sleeping or waiting until a deadline (Long.MAX_VALUE if it waits to be notified).
+     */
+    private static class Waiter {
+        private final long deadline;
+        private final Object monitor;
+
+        private Waiter(long deadline, Object monitor) {
+            this.deadline = deadline;
+            this.monitor = monitor;
+        }
+    }
+
+    /**
+     * The game time minus the system time.
+     */
+    private volatile long offset;
+
+    /**
+     * The number of registered threads, and the registered threads currently idle (guarded by this).
+     */
+    private int participants;
+    private final List<Waiter> waiters = new ArrayList<>();
+
+    /**
+     * Monitors of waiters whose deadline was skipped to. They are notified by a separate thread, which never holds any
+     * other monitor, so that waking them cannot deadlock with the threads moving the clock.
+     */
+    private final BlockingQueue<Object> wakeups = new LinkedBlockingQueue<>();
+
+    public SimulatedGameClock() {
+        Thread notifier = new Thread(() -> {
+            try {
+                while (true) {
+                    Object monitor = wakeups.take();
+                    synchronized (monitor) {
+                        monitor.notifyAll();
+                    }
+                }
+            } catch (InterruptedException ignored) {}
+        }, "clock-notifier");
+        notifier.setDaemon(true);
+        notifier.start();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis() + offset;
+    }
+
+    @Override
+    public synchronized void sleep(long millis) throws InterruptedException {
+        if (millis <= 0) return;
+        long deadline = currentTimeMillis() + millis;
+        Waiter waiter = enterIdle(deadline, this);
+        try {
+            long remaining;
+            while ((remaining = deadline - currentTimeMillis()) > 0)
+                wait(remaining);
+        } finally {
+            leaveIdle(waiter);
+        }
+    }
+
+    @Override
+    public void await(Object monitor, long millis) throws InterruptedException {
+        long deadline = millis > 0 ? currentTimeMillis() + millis : Long.MAX_VALUE;
+        Waiter waiter;
+        synchronized (this) {
+            waiter = enterIdle(deadline, monitor);
+        }
+        try {
+            if (millis <= 0) monitor.wait();
+            else {
+                long remaining = deadline - currentTimeMillis();
+                if (remaining > 0) monitor.wait(remaining);
+            }
+        } finally {
+            synchronized (this) {
+                leaveIdle(waiter);
+            }
+        }
+    }
+
+    @Override
+    public void wake(Object monitor) {
+        synchronized (this) {
+            waiters.removeIf(waiter -> waiter.monitor == monitor);
+        }
+        monitor.notifyAll();
+    }
+
+    @Override
+    public synchronized void register() {
+        ++participants;
+    }
+
+    @Override
+    public synchronized void unregister() {
+        --participants;
+        skipIfAllIdle();
+    }
+
+    private Waiter enterIdle(long deadline, Object monitor) {
+        Waiter waiter = new Waiter(deadline, monitor);
+        waiters.add(waiter);
+        skipIfAllIdle();
+        return waiter;
+    }
+
+    /**
+     * Does nothing if the waiter was already removed by wake.
+     */
+    private void leaveIdle(Waiter waiter) {
+        waiters.remove(waiter);
+    }
+
+    /**
+     * If all the registered threads are idle, moves the game time to the earliest deadline and wakes its waiters.
+     * Must be called holding this.
+     */
+    private void skipIfAllIdle() {
+        if (participants <= 0 || waiters.size() < participants) return;
+
+        long next = Long.MAX_VALUE;
+        for (Waiter waiter : waiters)
+            next = Math.min(next, waiter.deadline);
+        if (next == Long.MAX_VALUE) return; // everybody waits to be notified
+
+        long now = currentTimeMillis();
+        if (next > now) offset += next - now;
+
+        for (Waiter waiter : waiters)
+            if (waiter.deadline <= next) {
+                if (waiter.monitor == this) notifyAll();
+                else wakeups.offer(waiter.monitor);
+            }
+    }
+}
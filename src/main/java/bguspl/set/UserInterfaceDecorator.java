@@ -1,104 +1,113 @@
 package bguspl.set;
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
+/**
+ * A user interface that forwards all calls to another one (if any). This is the base of the optional layers wrapped
+ * around the actual user interface, see {@link #build}.
+ */
 public class UserInterfaceDecorator implements UserInterface {
 
-    private final Logger logger;
-    private final Util util;
-    private final UserInterface ui;
+    protected final UserInterface ui;
 
-    public UserInterfaceDecorator(Logger logger, Util util, UserInterface ui) {
+    public UserInterfaceDecorator(UserInterface ui) {
         this.ui = ui;
-        this.logger = logger;
-        this.util = util;
+    }
 
+    /**
+     * Builds the chain of user interface layers according to the configuration. Disabled layers are omitted, so when
+     * tracing, spinning and the event stream are all off the actual user interface is returned as is. When the events
+     * are published, the actual user interface is one of their subscribers, and others may subscribe too.
+     *
+     * @param logger - the game logger.
+     * @param config - the game configuration.
+     * @param util   - the game utilities.
+     * @param ui     - the actual user interface (null if running without one).
+     * @param events - the publisher of the game events (null if they are not published).
+     * @return - the user interface to be used by the game engine.
+     */
+    public static UserInterface build(Logger logger, Config config, Util util, UserInterface ui,
+                                      GameEventPublisher events) {
+        UserInterface chain = ui;
         if (ui == null) System.out.println("running without a user interface. Check logs.");
+        if (events != null) {
+            // the actual user interface becomes a subscriber of the game events, so that it never stalls the engine
+            if (ui != null) events.subscribe("ui", new GameEventPublisher.Subscriber() {
+                @Override
+                public void onNext(GameEvent event) {
+                    event.applyTo(ui);
+                }
+
+                @Override
+                public void onComplete() {
+                    ui.dispose();
+                }
+            }, config.eventBufferSize, GameEventPublisher.Policy.COALESCE);
+            chain = events;
+        } else if (ui == null) chain = new UserInterfaceDecorator(null);
+        if (config.randomSpinMax > 0) chain = new UserInterfaceSpinner(util, chain);
+        if (config.traceUserInterface && logger.isLoggable(Level.SEVERE)) chain = new UserInterfaceTracer(logger, chain);
+        return chain;
     }
 
     @Override
     public void placeCard(int card, int slot) {
-        logger.severe("placing card " + card + " in slot " + slot);
-        util.spin();
         if (ui != null) ui.placeCard(card, slot);
     }
 
     @Override
     public void removeCard(int slot) {
-        logger.severe("removing card from slot " + slot);
-        util.spin();
         if (ui != null) ui.removeCard(slot);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        logger.severe("player " + (player + 1) + " placing token on slot " + slot);
-        util.spin();
         if (ui != null) ui.placeToken(player, slot);
     }
 
     @Override
     public void removeTokens() {
-        logger.severe("removing all tokens");
-        util.spin();
         if (ui != null) ui.removeTokens();
     }
 
     @Override
     public void removeTokens(int slot) {
-        logger.severe("removing tokens from slot " + slot);
-        util.spin();
         if (ui != null) ui.removeTokens(slot);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        logger.severe("removing player " + (player + 1) + " token from slot " + slot);
-        util.spin();
         if (ui != null) ui.removeToken(player, slot);
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
-        if (!warn || millies % 1000L == 0L)
-            logger.severe("updating countdown to " + millies);
         if (ui != null) ui.setCountdown(millies, warn);
     }
 
     @Override
     public void setElapsed(long millies) {
-        logger.severe("updating elapsed time to " + millies);
-        util.spin();
         if (ui != null) ui.setElapsed(millies);
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        logger.severe("setting player " + (player + 1) + " freeze to " + millies);
-        util.spin();
         if (ui != null) ui.setFreeze(player, millies);
     }
 
     @Override
     public void setScore(int player, int score) {
-        logger.severe("setting player " + (player + 1) + " score to " + score);
-        util.spin();
         if (ui != null) ui.setScore(player, score);
     }
 
     @Override
     public void announceWinner(int[] players) {
-        List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
-        logger.severe("announcing winner(s): " + String.join(", ", winners));
         if (ui != null) ui.announceWinner(players);
     }
 
     @Override
     public void dispose() {
-        logger.severe("disposing of user interface elements");
         if (ui != null) ui.dispose();
     }
 }
@@ -0,0 +1,69 @@
+package bguspl.set;
+
+/**
+ * A user interface layer that spins a random number of cycles before forwarding calls, to shake out race conditions
+ * (enabled when RandomSpinMax is positive).
+ */
+public class UserInterfaceSpinner extends UserInterfaceDecorator {
+
+    private final Util util;
+
+    public UserInterfaceSpinner(Util util, UserInterface ui) {
+        super(ui);
+        this.util = util;
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        util.spin();
+        super.placeCard(card, slot);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        util.spin();
+        super.removeCard(slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        util.spin();
+        super.placeToken(player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        util.spin();
+        super.removeTokens();
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        util.spin();
+        super.removeTokens(slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        util.spin();
+        super.removeToken(player, slot);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        util.spin();
+        super.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        util.spin();
+        super.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        util.spin();
+        super.setScore(player, score);
+    }
+}
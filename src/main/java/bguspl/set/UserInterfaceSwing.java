@@ -73,6 +73,16 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
         private final JLabel timerField;
 
+        /**
+         * The value currently displayed (seconds, or hundredths of a second when warning) and its mode.
+         */
+        private long displayedValue = Long.MIN_VALUE;
+        private int displayedMode = -1;
+
+        private static final int MODE_COUNTDOWN = 0;
+        private static final int MODE_WARN = 1;
+        private static final int MODE_ELAPSED = 2;
+
         private String generateTime(long millies, boolean warn) {
             if (warn)
                 return format("Remaining Time: %.2f", (double) millies / 1000.0f);
@@ -90,13 +100,28 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             add(timerField);
         }
 
+        /**
+         * Updates the cached display value and mode.
+         * @return - true iff the displayed text has to change.
+         */
+        private boolean display(long value, int mode) {
+            if (value == displayedValue && mode == displayedMode) return false;
+            if (mode != displayedMode)
+                timerField.setForeground(mode == MODE_WARN ? Color.RED : Color.BLACK);
+            displayedValue = value;
+            displayedMode = mode;
+            return true;
+        }
+
         private void setCountdown(long millies, boolean warn) {
-            timerField.setText(generateTime(millies, warn));
-            timerField.setForeground(warn ? Color.RED : Color.BLACK);
+            // only touch the label when the shown second (or hundredth, when warning) changes
+            if (display(warn ? millies / 10L : millies / 1000L, warn ? MODE_WARN : MODE_COUNTDOWN))
+                timerField.setText(generateTime(millies, warn));
         }
 
         private void setElapsed(long millies) {
-            timerField.setText("Elapsed time: " + millies / 1000);
+            if (display(millies / 1000L, MODE_ELAPSED))
+                timerField.setText("Elapsed time: " + millies / 1000);
         }
     }
 
@@ -108,6 +133,11 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         private final boolean[][][] playerTokens;
         private final JLabel[][] tokenText;
 
+        /**
+         * The token overlay text currently shown in each cell (cached so unchanged cells are not touched).
+         */
+        private final String[][] tokenCache;
+
         private Image loadImageResource(String filename) {
             URL imageResource = getClass().getClassLoader().getResource(filename);
             if (imageResource == null)
@@ -130,11 +160,13 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
             grid = new Image[config.rows][config.columns];
             tokenText = new JLabel[config.rows][config.columns];
+            tokenCache = new String[config.rows][config.columns];
             playerTokens = new boolean[config.players][config.rows][config.columns];
             for (int row = 0; row < config.rows; row++) {
                 for (int column = 0; column < config.columns; column++) {
                     // init the cards on the table grid as empty cards
                     grid[row][column] = emptyCard;
+                    tokenCache[row][column] = "";
 
                     // init the JLabel selection overlay
                     tokenText[row][column] = new JLabel("");
@@ -148,66 +180,94 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
+        /**
+         * Marks a single cell as dirty so that only its bounds are repainted.
+         */
+        private void repaintCell(int row, int column) {
+            repaint(column * config.cellWidth, row * config.cellHeight, config.cellWidth, config.cellHeight);
+        }
+
         private void placeCard(int slot, int card) {
             int row = slot / config.columns;
             int column = slot % config.columns;
+            if (grid[row][column] == deck[card]) return;
             grid[row][column] = deck[card];
-            validate();
-            repaint();
+            repaintCell(row, column);
         }
 
         private void removeCard(int slot) {
             int row = slot / config.columns;
             int column = slot % config.columns;
+            if (grid[row][column] == emptyCard) return;
             grid[row][column] = emptyCard;
-            validate();
-            repaint();
+            repaintCell(row, column);
         }
 
         private void placeToken(int player, int slot) {
             int row = slot / config.columns;
             int column = slot % config.columns;
+            if (playerTokens[player][row][column]) return;
             playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            updateTokenText(row, column);
         }
 
         private void removeTokens() {
-            for (int i = 0; i < config.tableSize; i++)
-                removeTokens(i);
+            for (int row = 0; row < config.rows; row++)
+                for (int column = 0; column < config.columns; column++)
+                    if (!tokenCache[row][column].isEmpty())
+                        removeTokens(row * config.columns + column);
         }
 
         private void removeTokens(int slot) {
             int row = slot / config.columns;
             int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
+            for (int player = 0; player < playerTokens.length; player++)
                 playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
-            }
+            updateTokenText(row, column);
         }
 
         private void removeToken(int player, int slot) {
             int row = slot / config.columns;
             int column = slot % config.columns;
+            if (!playerTokens[player][row][column]) return;
             playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            updateTokenText(row, column);
+        }
+
+        /**
+         * Regenerates the token overlay of a cell and touches its label only if the text actually changed.
+         */
+        private void updateTokenText(int row, int column) {
+            String text = generatePlayersTokenText(row, column);
+            if (text.equals(tokenCache[row][column])) return;
+            tokenCache[row][column] = text;
+            tokenText[row][column].setText(text);
         }
 
         private String generatePlayersTokenText(int row, int column) {
-            String text = "";
+            StringBuilder text = new StringBuilder();
             for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
-                    text = text.concat(config.playerNames[player] + ", ");
+                if (playerTokens[player][row][column]) {
+                    if (text.length() > 0) text.append(", ");
+                    text.append(config.playerNames[player]);
+                }
             }
-            if (text.length() < 2)
-                return "";
-            return text.substring(0, text.length() - 2);
+            return text.toString();
         }
 
         @Override
         public void paintComponent(Graphics g) {
-            // draw card images
-            for (int row = 0; row < config.rows; row++)
-                for (int column = 0; column < config.columns; column++)
+            // draw only the card images intersecting the dirty region
+            Rectangle clip = g.getClipBounds();
+            int firstRow = 0, lastRow = config.rows - 1, firstColumn = 0, lastColumn = config.columns - 1;
+            if (clip != null) {
+                firstRow = Math.max(firstRow, clip.y / config.cellHeight);
+                lastRow = Math.min(lastRow, (clip.y + clip.height - 1) / config.cellHeight);
+                firstColumn = Math.max(firstColumn, clip.x / config.cellWidth);
+                lastColumn = Math.min(lastColumn, (clip.x + clip.width - 1) / config.cellWidth);
+            }
+            for (int row = firstRow; row <= lastRow; row++)
+                for (int column = firstColumn; column <= lastColumn; column++)
                     g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
         }
     }
@@ -216,11 +276,27 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
         private final JLabel[][] playersTable;
 
+        /**
+         * The freeze seconds (0 if not frozen) and score currently shown for each player.
+         */
+        private final long[] displayedFreeze;
+        private final int[] displayedScore;
+
+        /**
+         * Pre-built name labels per player, indexed by the freeze seconds shown (grown on demand).
+         */
+        private final String[][] freezeTexts;
+
         private PlayersPanel() {
             this.setLayout(new GridLayout(2, config.players));
             this.setPreferredSize(new Dimension(config.players * config.playerCellWidth, config.rows * config.playerCellHeight));
             this.playersTable = new JLabel[2][config.players];
+            this.displayedFreeze = new long[config.players];
+            this.displayedScore = new int[config.players];
+            this.freezeTexts = new String[config.players][];
+            int maxFreezeSeconds = (int) (Math.max(config.pointFreezeMillis, config.penaltyFreezeMillis) / 1000) + 1;
             for (int i = 0; i < config.players; i++) {
+                this.freezeTexts[i] = new String[maxFreezeSeconds + 1];
                 this.playersTable[0][i] = new JLabel(config.playerNames[i]);
                 this.playersTable[0][i].setFont(new Font("Serif", Font.BOLD, config.fontSize));
                 this.playersTable[0][i].setHorizontalAlignment(JLabel.CENTER);
@@ -235,10 +311,24 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
+        private String freezeText(int player, int seconds) {
+            String[] texts = freezeTexts[player];
+            if (seconds >= texts.length) return config.playerNames[player] + " (" + seconds + ")";
+            if (texts[seconds] == null) texts[seconds] = config.playerNames[player] + " (" + seconds + ")";
+            return texts[seconds];
+        }
+
         private void setFreeze(int player, long millies) {
-            if (millies > 0) {
-                this.playersTable[0][player].setText(config.playerNames[player] + " (" + millies / 1000 + ")");
-                this.playersTable[0][player].setForeground(Color.RED);
+            boolean frozen = millies > 0;
+            boolean wasFrozen = displayedFreeze[player] > 0;
+            long seconds = frozen ? millies / 1000 : 0;
+            // shift by one so that "frozen for less than a second" differs from "not frozen"
+            long shown = frozen ? seconds + 1 : 0;
+            if (shown == displayedFreeze[player]) return;
+            displayedFreeze[player] = shown;
+            if (frozen) {
+                this.playersTable[0][player].setText(freezeText(player, (int) seconds));
+                if (!wasFrozen) this.playersTable[0][player].setForeground(Color.RED);
             } else {
                 this.playersTable[0][player].setText(config.playerNames[player]);
                 this.playersTable[0][player].setForeground(Color.BLACK);
@@ -246,6 +336,8 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
 
         private void setScore(int player, int score) {
+            if (displayedScore[player] == score) return;
+            displayedScore[player] = score;
             playersTable[1][player].setText(Integer.toString(score));
         }
     }
@@ -0,0 +1,93 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * A user interface layer that logs every call before forwarding it (enabled by the TraceUserInterface setting).
+ */
+public class UserInterfaceTracer extends UserInterfaceDecorator {
+
+    private final Logger logger;
+
+    public UserInterfaceTracer(Logger logger, UserInterface ui) {
+        super(ui);
+        this.logger = logger;
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        logger.severe("placing card " + card + " in slot " + slot);
+        super.placeCard(card, slot);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        logger.severe("removing card from slot " + slot);
+        super.removeCard(slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        logger.severe("player " + (player + 1) + " placing token on slot " + slot);
+        super.placeToken(player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        logger.severe("removing all tokens");
+        super.removeTokens();
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        logger.severe("removing tokens from slot " + slot);
+        super.removeTokens(slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        logger.severe("removing player " + (player + 1) + " token from slot " + slot);
+        super.removeToken(player, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        if (!warn || millies % 1000L == 0L)
+            logger.severe("updating countdown to " + millies);
+        super.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        logger.severe("updating elapsed time to " + millies);
+        super.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        logger.severe("setting player " + (player + 1) + " freeze to " + millies);
+        super.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        logger.severe("setting player " + (player + 1) + " score to " + score);
+        super.setScore(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
+        logger.severe("announcing winner(s): " + String.join(", ", winners));
+        super.announceWinner(players);
+    }
+
+    @Override
+    public void dispose() {
+        logger.severe("disposing of user interface elements");
+        super.dispose();
+    }
+}
@@ -1,6 +1,8 @@
 package bguspl.set;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * An interface for general utilities provided for convenience.
@@ -31,6 +33,24 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Checks many triples of cards for legal sets at once (for bulk workloads such as set enumeration and analysis).
+     *
+     * @param a   - the first card of each triple.
+     * @param b   - the second card of each triple.
+     * @param c   - the third card of each triple.
+     * @param out - receives, for each i < out.length, whether a[i], b[i] and c[i] form a legal set.
+     */
+    default void testSets(int[] a, int[] b, int[] c, boolean[] out) {
+        int[] cards = new int[3];
+        for (int i = 0; i < out.length; ++i) {
+            cards[0] = a[i];
+            cards[1] = b[i];
+            cards[2] = c[i];
+            out[i] = testSet(cards);
+        }
+    }
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
      *
@@ -40,6 +60,18 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Finds and returns up to count sets among the first size cards of the given array.
+     *
+     * @param cards - an array of card ids.
+     * @param size  - the number of cards (from the start of the array) to search in.
+     * @param count - the maximum number of sets to find.
+     * @return - a list of up to count integer arrays, each one contains the card ids of a legal set.
+     */
+    default List<int[]> findSets(int[] cards, int size, int count) {
+        return findSets(Arrays.stream(cards, 0, size).boxed().collect(Collectors.toList()), count);
+    }
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
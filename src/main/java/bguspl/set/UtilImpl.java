@@ -13,8 +13,69 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The width (in bits) of a feature lane in the packed card representation, and the number of lanes per word.
+     */
+    private static final int LANE_BITS = 4;
+    private static final int LANES = Long.SIZE / LANE_BITS;
+    private static final long LOW_LANE_BITS = 0x1111111111111111L;
+
+    /**
+     * The features of every card, packed LANE_BITS bits per feature into words (words per card each), or null if the
+     * feature values do not fit into a lane.
+     */
+    private final long[] packed;
+    private final int words;
+
     public UtilImpl(Config config) {
         this.config = config;
+        words = (config.featureCount + LANES - 1) / LANES;
+        packed = config.featureSize <= 1 << LANE_BITS ? packFeatures() : null;
+    }
+
+    private long[] packFeatures() {
+        long[] cards = new long[config.deckSize * words];
+        int[] features = new int[config.featureCount];
+        for (int card = 0; card < config.deckSize; ++card) {
+            cardToFeatures(card, features);
+            for (int i = 0; i < features.length; ++i)
+                cards[card * words + i / LANES] |= (long) features[i] << (i % LANES * LANE_BITS);
+        }
+        return cards;
+    }
+
+    /**
+     * Sets the lowest bit of every lane that is not zero (and clears all the other bits).
+     */
+    private static long nonZeroLanes(long x) {
+        x |= x >>> 1;
+        x |= x >>> 2;
+        return x & LOW_LANE_BITS;
+    }
+
+    /**
+     * Checks whether three cards form a legal set using the packed features: a feature is legal unless exactly one
+     * pair of the cards agrees on it, i.e. unless exactly two of the three pairs differ. All the lanes of a word are
+     * checked at once, without branches.
+     */
+    private boolean isSet(int a, int b, int c) {
+        long bad = 0;
+        for (int w = 0; w < words; ++w) {
+            long fa = packed[a * words + w], fb = packed[b * words + w], fc = packed[c * words + w];
+            long differ = nonZeroLanes(fa ^ fb) + nonZeroLanes(fb ^ fc) + nonZeroLanes(fa ^ fc);
+            bad |= (differ >>> 1) & ~differ;
+        }
+        return (bad & LOW_LANE_BITS) == 0;
+    }
+
+    @Override
+    public void testSets(int[] a, int[] b, int[] c, boolean[] out) {
+        if (packed == null) {
+            Util.super.testSets(a, b, c, out);
+            return;
+        }
+        for (int i = 0; i < out.length; ++i)
+            out[i] = isSet(a[i], b[i], c[i]);
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -40,6 +101,7 @@ public class UtilImpl implements Util {
 
     @Override
     public boolean testSet(int[] cards) {
+        if (cards.length == 3 && packed != null) return isSet(cards[0], cards[1], cards[2]);
         int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
@@ -66,30 +128,48 @@ public class UtilImpl implements Util {
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        return findSets(deck.stream().mapToInt(Integer::intValue).toArray(), deck.size(), count);
+    }
+
+    @Override
+    public List<int[]> findSets(int[] deck, int size, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
-        int n = deck.size();
+        int n = size;
         int r = config.featureSize;
         int[] combination = new int[r];
+        int[] cards = new int[r];
 
         for (int i = 0; i < r; ++i)
             combination[i] = i;
 
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
+        while (combination[r - 1] < n) {
+            if (r == 3 && packed != null && !isSet(deck[combination[0]], deck[combination[1]], deck[combination[2]])) {
+                nextCombination(combination, n);
+                continue;
+            }
+            for (int i = 0; i < r; ++i)
+                cards[i] = deck[combination[i]];
+            Arrays.sort(cards);
             if (testSet(cards)) {
-                sets.add(cards);
+                sets.add(cards.clone());
                 if (sets.size() >= count) return sets;
             }
-
-            // generate next combination in lexicographic order
-            int t = r - 1;
-            while (t != 0 && combination[t] == n - r + t) --t;
-            combination[t]++;
-            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+            nextCombination(combination, n);
         }
         return sets;
     }
 
+    /**
+     * Generates the next combination (of indices out of n) in lexicographic order.
+     */
+    private static void nextCombination(int[] combination, int n) {
+        int r = combination.length;
+        int t = r - 1;
+        while (t != 0 && combination[t] == n - r + t) --t;
+        combination[t]++;
+        for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+    }
+
     public void spin() {
         if (config.randomSpinMax <= 0) return;
         long cycles = ThreadLocalRandom.current().nextLong(config.randomSpinMin, config.randomSpinMax);
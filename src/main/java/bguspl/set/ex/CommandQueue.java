@@ -0,0 +1,87 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded lock-free queue of commands (encoded as longs) with many producers and a single consumer. Producers never
+ * block: offering to a full queue fails.
+ */
+class CommandQueue {
+
+    /**
+     * The queue slots (the capacity is a power of two, so a sequence number is mapped to a slot by masking).
+     */
+    private final int mask;
+    private final long[] commands;
+
+    /**
+     * For each slot, the sequence number + 1 of the command last published in it.
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * The next sequence number to be claimed by a producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The next sequence number to be taken by the consumer.
+     */
+    private volatile long head;
+
+    /**
+     * @param capacity - the maximal number of pending commands (rounded up to a power of two).
+     */
+    CommandQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        commands = new long[size];
+        published = new AtomicLongArray(size);
+    }
+
+    /**
+     * Adds a command to the queue (may be called by any thread).
+     *
+     * @param command - the command.
+     * @return - true iff the command was added (i.e. the queue was not full).
+     */
+    boolean offer(long command) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head > mask) return false;
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        commands[slot] = command;
+        published.lazySet(slot, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Takes the pending commands, in the order they were added (must only be called by the consumer thread).
+     *
+     * @param batch - receives the commands.
+     * @return - the number of commands taken (at most batch.length).
+     */
+    int drainTo(long[] batch) {
+        long sequence = head;
+        int count = 0;
+        while (count < batch.length) {
+            int slot = (int) sequence & mask;
+            if (published.get(slot) != sequence + 1) break;
+            batch[count++] = commands[slot];
+            ++sequence;
+        }
+        head = sequence;
+        return count;
+    }
+
+    /**
+     * @return - true iff no command was added that was not taken yet.
+     */
+    boolean isEmpty() {
+        return head == tail.get();
+    }
+}
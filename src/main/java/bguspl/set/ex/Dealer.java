@@ -1,13 +1,20 @@
 package bguspl.set.ex;
 
+import bguspl.set.EngineMode;
 import bguspl.set.Env;
+import bguspl.set.Leaderboard;
+import bguspl.set.LockProfiler;
 import bguspl.set.ThreadLogger;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 /**
@@ -27,9 +34,20 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The players whose tokens were removed from a slot (see Table::removeTokens, only used under the table).
      */
-    private final List<Integer> deck;
+    private final long[] tokenOwners;
+
+    /**
+     * The card ids that are left in the dealer's deck (only the first deckSize entries are in the deck).
+     */
+    private final int[] deck;
+    private int deckSize;
+
+    /**
+     * The random number generator used for shuffling (its seed is written to the game journal).
+     */
+    private final Random random;
 
     /**
      * True iff game should be terminated.
@@ -39,18 +57,73 @@ public class Dealer implements Runnable {
     public Object keyDealer;
     public BlockingQueue<Player> playerSetQueue;
 
+    /**
+     * The claims taken from playerSetQueue in the current pass (reused between passes).
+     */
+    private final List<Player> claims = new ArrayList<>();
+
     /**
      * The time when the dealer needs to reshuffle the deck due to turn timeout.
      */
     private long reshuffleTime = Long.MAX_VALUE;
 
+    /**
+     * The resolution of the game's timers in milliseconds, and the refresh rate of the countdown in warning mode.
+     */
+    private static final long TIMER_TICK_MILLIS = 10;
+    private static final long WARNING_REFRESH_MILLIS = 100;
+
+    /**
+     * The game's timers: freeze expiries, countdown display changes and the reshuffle deadline (driven by the dealer
+     * thread only).
+     */
+    private final TimerWheel timers;
+    private final TimerWheel.Timer[] freezeTimers;
+    private TimerWheel.Timer countdownTimer;
+    private TimerWheel.Timer reshuffleTimer;
+
+    /**
+     * True iff the reshuffle deadline has passed.
+     */
+    private boolean reshuffleDue;
+
+    /**
+     * The maximal number of pending commands, and the number of commands applied under one acquisition of the table.
+     */
+    private static final int COMMAND_QUEUE_CAPACITY = 1024;
+    private static final int COMMAND_BATCH_SIZE = 64;
+
+    /**
+     * The key presses submitted by the players in the single-writer and actor engine modes (player id in the high 32 bits, slot
+     * in the low 32 bits), and the batch they are taken into.
+     */
+    private final CommandQueue commands = new CommandQueue(COMMAND_QUEUE_CAPACITY);
+    private final long[] batch = new long[COMMAND_BATCH_SIZE];
+
+    /**
+     * True while the dealer thread waits on keyDealer, so that submitting a command only notifies it when needed.
+     */
+    private volatile boolean sleeping;
+
+    /**
+     * The work-stealing pool running the players' tasks in the actor engine mode (null otherwise).
+     */
+    private ForkJoinPool actors;
+
     public Dealer(Env env, Table table, Player[] players) {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        this.tokenOwners = new long[Table.words(players.length)];
+        deck = IntStream.range(0, env.config.deckSize).toArray();
+        deckSize = deck.length;
+        long seed = env.config.randomSeed != 0 ? env.config.randomSeed : System.nanoTime();
+        random = new Random(seed);
+        env.journal.seed(seed);
         keyDealer = new Object();
         playerSetQueue = new LinkedBlockingQueue<Player>();
+        timers = new TimerWheel(TIMER_TICK_MILLIS, env.clock.currentTimeMillis());
+        freezeTimers = new TimerWheel.Timer[players.length];
     }
 
     /**
@@ -59,34 +132,73 @@ public class Dealer implements Runnable {
     @Override
     public void run() {
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
+        env.clock.register();
         String name;
-        for(int i=0; i<players.length; i++) {
+        if (env.config.engineMode == EngineMode.ACTOR) {
+            // FIFO (async) mode, as the tasks are event handlers that are never joined
+            actors = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+            for (Player player : players)
+                player.startActor(actors);
+        } else if (env.config.engineMode == EngineMode.SINGLE_WRITER) {
+            // the dealer applies the key presses itself, so the players need no threads
+            for (Player player : players)
+                player.startWithoutThread();
+        } else for(int i=0; i<players.length; i++) {
             name = "Player " + i;
             new ThreadLogger(players[i], name, env.logger).startWithLog();
         }
         while (!shouldFinish()) {
             placeCardsOnTable();
             timerLoop();
+            boolean timedOut = reshuffleDue;
             updateTimerDisplay(true);
-            removeAllCardsFromTable();
+            removeAllCardsFromTable(timedOut);
         }
         announceWinners();
         terminate();
+        env.clock.unregister();
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
     }
 
     /**
-     * The inner loop of the dealer thread that runs as long as the countdown did not time out.
+     * The inner loop of the dealer thread that runs as long as the countdown did not time out and the table holds a set.
      */
     private void timerLoop() {
-        reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis + 900;
-        while (!terminate && System.currentTimeMillis() < reshuffleTime) {
+        updateTimerDisplay(true);
+        while (!terminate && !reshuffleDue && !tableHasNoSet()) {
             sleepUntilWokenOrTimeout();
-            updateTimerDisplay(false);
-            removeCardsFromTable();
+            long iterationStart = System.nanoTime();
+            timers.advance(env.clock.currentTimeMillis());
+            if (env.config.engineMode != EngineMode.LOCKING) applyCommands();
+            else removeCardsFromTable();
             placeCardsOnTable();
+            env.metrics.dealerIteration(iterationStart);
         }
-        reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis + 900;
+    }
+
+    /**
+     * Checks whether the players are stuck with a table without sets, in which case there is no point in waiting for
+     * the countdown. The table is only searched again when it changed (see Table::hasSet), so checking on every
+     * iteration is cheap.
+     *
+     * @return - true iff none of the cards on the table form a legal set.
+     */
+    private boolean tableHasNoSet() {
+        return !table.hasSet();
+    }
+
+    /**
+     * Runs a critical section of the dealer holding a monitor, unless the dealer is the only writer of the table and the
+     * tokens (single-writer and actor engine modes), in which case there is nobody to exclude.
+     *
+     * @param kind    - the kind of monitor (see LockProfiler).
+     * @param monitor - the monitor to hold.
+     * @param section - the critical section.
+     */
+    private void exclusive(int kind, Object monitor, Runnable section) {
+        if (env.config.engineMode != EngineMode.LOCKING) section.run();
+        else env.locks.run(kind, monitor, section);
     }
 
     /**
@@ -99,6 +211,12 @@ public class Dealer implements Runnable {
             players[i].terminate();
             
         }   
+        if (actors != null) {
+            actors.shutdown();
+            try {
+                actors.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {}
+        }
         Thread.currentThread().interrupt();
     }
 
@@ -108,186 +226,302 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || env.util.findSets(deck, deckSize, 1).size() == 0;
+    }
+
+    /**
+     * Draws a random card from the deck (a single Fisher-Yates step: the drawn card's place is filled by the last card).
+     *
+     * @return - the card drawn.
+     */
+    private int drawCard() {
+        int i = random.nextInt(deckSize);
+        int card = deck[i];
+        deck[i] = deck[--deckSize];
+        return card;
+    }
+
+    /**
+     * Returns a card to the deck.
+     *
+     * @param card - the card to return.
+     */
+    private void returnCard(int card) {
+        deck[deckSize++] = card;
     }
 
     /**
      * Checks cards should be removed from the table and removes them.
+     * All the pending claims are handled in one pass (in arrival order) under a single acquisition of the table.
      */
-    private void removeCardsFromTable() {
-        synchronized(table) { 
-            // TODO implement
-            Player playerClaimsSet;
+    void removeCardsFromTable() {
+        env.locks.run(LockProfiler.TABLE, table, () -> {
+            drainClaims();
+
+            for (int i = 0; i < claims.size(); i++) {
+                env.metrics.claimProcessed(claims.size() - i);
+                handleClaim(claims.get(i));
+            }
+            claims.clear();
+        });
+    }
+
+    /**
+     * Submits a key press of a player, to be applied by the dealer thread (single-writer and actor engine modes).
+     *
+     * @param player - the player pressing the key.
+     * @param slot   - the slot corresponding to the key.
+     * @return - true iff the command was accepted (i.e. the command queue was not full).
+     */
+    public boolean submitKeyPress(Player player, int slot) {
+        if (!commands.offer((long) player.id << 32 | slot)) return false;
+        if (sleeping) {
             synchronized(keyDealer) {
-                playerClaimsSet = playerSetQueue.poll();
+                env.clock.wake(keyDealer);
             }
-            
-            if(!(playerClaimsSet == null)) { 
-                synchronized(playerClaimsSet.keyPlayer) {
-                    if(playerClaimsSet.tokensSize() == 3) { 
-                        // player claims set and check if the set is valid and remove the 3 cards
-                        int[] cards = new int[3]; 
-                        for(int i=0; i<3; i++) {
-                            int slot;
-                            slot = playerClaimsSet.tokens.poll();
-                            cards[i] = table.slotToCard[slot];
-                        }
-                        
-
-                        if(env.util.testSet(cards)) {
-                            // this is a valid set
-                            playerClaimsSet.point();
-                            updateFreezeDisplay();
-                            synchronized(playerClaimsSet.keyPlayer) {
-                                playerClaimsSet.frozen = true;
-                            }
-                            removeTokensFromSet(playerClaimsSet, cards);
-                            updateTimerDisplay(true);
-                        } else {
-                            // this is not a valid sets
-                            playerClaimsSet.penalty();
-                            updateFreezeDisplay();
-                            synchronized(playerClaimsSet.keyPlayer) {
-                                playerClaimsSet.frozen = true;
-                            }
-                        
-                            try {
-                                synchronized(playerClaimsSet.keyPlayer) {
-                                    playerClaimsSet.tokens.put(table.cardToSlot[cards[0]]);
-                                    playerClaimsSet.tokens.put(table.cardToSlot[cards[1]]);
-                                    playerClaimsSet.tokens.put(table.cardToSlot[cards[2]]);
-                                }
-                            } catch (InterruptedException e) {}  
-                    }
-                    synchronized(playerClaimsSet.keyPlayer) {
-                        playerClaimsSet.keyPlayer.notifyAll();
-                    }
-            
         }
+        return true;
     }
+
+    /**
+     * Applies the pending key presses in the order they were submitted (single-writer and actor engine modes): each
+     * one toggles the player's token on the slot, and placing a third token claims a set right away. The dealer is the
+     * only writer of the table and the tokens in these modes, so it holds no monitor meanwhile.
+     */
+    private void applyCommands() {
+        int count;
+        while ((count = commands.drainTo(batch)) > 0) {
+            for (int i = 0; i < count; i++) {
+                Player player = players[(int) (batch[i] >>> 32)];
+                player.commandApplied();
+                applyKeyPress(player, (int) batch[i]);
+            }
+            table.publish();
+        }
+    }
+
+    /**
+     * Toggles a player's token on a slot (single-writer and actor engine modes, on the dealer thread).
+     *
+     * @param player - the player pressing the key.
+     * @param slot   - the slot corresponding to the key.
+     */
+    private void applyKeyPress(Player player, int slot) {
+        if (player.frozen || table.slotToCard[slot] == Table.EMPTY) return;
+        if (player.tokensContains(slot)) {
+            player.tokensRemove(slot);
+            table.removeToken(player.id, slot);
+        } else if (player.tokensAdd(slot)) {
+            table.placeToken(player.id, slot);
+            if (player.tokensSize() == 3) {
+                player.claimNanos = player.keyPressNanos;
+                env.metrics.claimSubmitted();
+                env.metrics.claimProcessed(1);
+                handleClaim(player);
+            }
+        }
+    }
+
+    /**
+     * Takes all the pending claims into claims.
+     */
+    private void drainClaims() {
+        env.locks.run(LockProfiler.DEALER, keyDealer, () -> playerSetQueue.drainTo(claims));
+    }
+
+    /**
+     * Checks a player's claim and rewards or penalizes the player accordingly (the caller must hold the table, unless
+     * the dealer is the only writer).
+     * A claim made stale by an earlier removal (i.e. the player no longer has 3 tokens) is dropped.
+     *
+     * @param playerClaimsSet - the player claiming a set.
+     */
+    private void handleClaim(Player playerClaimsSet) {
+        exclusive(LockProfiler.PLAYER, playerClaimsSet.keyPlayer, () -> {
+            int[] slots = playerClaimsSet.tokenSlots();
+            if(slots.length == 3) { 
+                // player claims set and check if the set is valid and remove the 3 cards
+                int[] cards;
+                boolean valid;
+                if (playerClaimsSet.claimVersion == table.version()) {
+                    // the table did not change since the player checked the claim
+                    cards = playerClaimsSet.claimCards;
+                    valid = playerClaimsSet.claimValid;
+                } else {
+                    cards = new int[3]; 
+                    for(int i=0; i<3; i++) {
+                        cards[i] = table.slotToCard[slots[i]];
+                    }
+                    valid = env.util.testSet(cards);
+                }
+                env.metrics.verdict(valid, playerClaimsSet.claimNanos);
+                env.journal.claim(playerClaimsSet.id, cards, valid);
+                if(valid) {
+                    // this is a valid set
+                    playerClaimsSet.point();
+                    playerClaimsSet.frozen = true;
+                    updateFreezeDisplay(playerClaimsSet);
+                    removeTokensFromSet(playerClaimsSet, cards);
+                    updateTimerDisplay(true);
+                } else {
+                    // this is not a valid sets (the player's tokens stay on the table)
+                    playerClaimsSet.penalty();
+                    playerClaimsSet.frozen = true;
+                    updateFreezeDisplay(playerClaimsSet);
+                }
+            }
+            playerClaimsSet.claimHandled();
+        });
     }
-}
-        
-}
 
     /**
      * Check if any cards can be removed from the deck and placed on the table.
      */
     private void placeCardsOnTable() {
         // TODO implement
-        synchronized(table) {
-            Collections.shuffle(deck);
-            int countNulls = 0;
-            int cardsToPlace = 0;
+        exclusive(LockProfiler.TABLE, table, () -> {
             boolean isCardPlaced = false;
-            for(int i =0; i<env.config.tableSize; i++) {
-                if(table.slotToCard[i] == null) {
-                    countNulls++;
-                }
-            }
-            if(countNulls < deck.size()) {
-                cardsToPlace = countNulls;
-            } else {
-                cardsToPlace = deck.size();
-            }
-
-            for(int i =0; i<env.config.tableSize; i++) {
-                if(table.slotToCard[i] == null && cardsToPlace > 0) {
-                    cardsToPlace--;
-                    int card = deck.remove(0);
-                    table.placeCard(card, i); 
+            for(int i =0; i<env.config.tableSize && deckSize > 0; i++) {
+                if(table.slotToCard[i] == Table.EMPTY) {
+                    table.placeCard(drawCard(), i); 
                     isCardPlaced = true;   
                 }
             }   
             if(env.config.hints && isCardPlaced)
                 table.hints(); 
-        }
-        
-
+            if(isCardPlaced)
+                env.analytics.cardsDealt();
+            table.publish();
+        });
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Sleep until the next timer is due or until the thread is awakened for some purpose.
      */
     private void sleepUntilWokenOrTimeout() {
         // TODO implement
         synchronized(keyDealer) {
+            sleeping = true;
             try {
-                keyDealer.wait(100);
+                if (playerSetQueue.isEmpty() && commands.isEmpty()) {
+                    long millis = timers.millisUntilNext(env.clock.currentTimeMillis());
+                    if (millis != 0)
+                        env.clock.await(keyDealer, Math.max(millis, 0));
+                }
             } catch (InterruptedException ignored) {}
+            sleeping = false;
         }
 
     }
 
     /**
      * Reset and/or update the countdown and the countdown display.
+     * Also schedules the next change of the displayed value (and, on reset, the reshuffle deadline).
      */
     private void updateTimerDisplay(boolean reset) {
               // TODO implement
+        long now = env.clock.currentTimeMillis();
+        if(reset) {
+            reshuffleTime = env.config.turnTimeoutMillis + now + 900;
+            reshuffleDue = false;
+            timers.cancel(reshuffleTimer);
+            reshuffleTimer = timers.schedule(reshuffleTime, () -> reshuffleDue = true);
+        }
         if(env.config.turnTimeoutMillis > 0) {
-  
-            if(reset) {
-                reshuffleTime = env.config.turnTimeoutMillis + System.currentTimeMillis() + 900;
-                env.ui.setCountdown(reshuffleTime - System.currentTimeMillis(), false);
+            long remaining = Math.max(reshuffleTime - now, 0);
+            long warningTime = reshuffleTime - env.config.turnTimeoutWarningMillis;
+            boolean warn = !reset && now > warningTime;
+            env.ui.setCountdown(remaining, warn);
 
+            timers.cancel(countdownTimer);
+            countdownTimer = null;
+            if(remaining > 0) {
+                // the countdown shows whole seconds until the warning, and is refreshed regularly after it
+                long next = warn ? now + WARNING_REFRESH_MILLIS
+                        : Math.min(reshuffleTime - remaining / 1000 * 1000 + 1, Math.max(warningTime + 1, now + 1));
+                countdownTimer = timers.schedule(next, () -> updateTimerDisplay(false));
             }
-            else if(reshuffleTime - System.currentTimeMillis() < env.config.turnTimeoutWarningMillis) {
-                env.ui.setCountdown(reshuffleTime - System.currentTimeMillis(), true);
-            } 
-            else {
-                env.ui.setCountdown(reshuffleTime - System.currentTimeMillis(), false);
-            }
-            updateFreezeDisplay();
-            
         }
-            
-         
     }
 
-private void updateFreezeDisplay() {
-    for(int i=0; i<players.length; i++) {
-        if(players[i].freezeTime - System.currentTimeMillis() > 0) {
-            if(players[i].freezeTime - System.currentTimeMillis() > 1000) {
-                env.ui.setFreeze(i, players[i].freezeTime - System.currentTimeMillis());
-            } else {
-                env.ui.setFreeze(i, 0);
+    /**
+     * Shows the remaining freeze time of a player and schedules the next change of the displayed value. Once the
+     * freeze is over, the player is released.
+     *
+     * @param player - the frozen player.
+     */
+    private void updateFreezeDisplay(Player player) {
+        timers.cancel(freezeTimers[player.id]);
+        freezeTimers[player.id] = null;
+        long remaining = player.freezeTime - env.clock.currentTimeMillis();
+        long next;
+        if(remaining > 1000) {
+            env.ui.setFreeze(player.id, remaining);
+            next = player.freezeTime - remaining / 1000 * 1000 + 1;
+        } else {
+            env.ui.setFreeze(player.id, 0);
+            if(remaining <= 900) {
+                player.unfreeze();
+                return;
             }
+            next = player.freezeTime - 900;
         }
-        
+        freezeTimers[player.id] = timers.schedule(next, () -> updateFreezeDisplay(player));
     }
-}   
 
 
     /**
      * Returns all the cards from the table to the deck.
+     *
+     * @param timedOut - true iff the countdown ran out (rather than the table holding no set, or the game ending).
      */
-    private void removeAllCardsFromTable() {
-        synchronized(table) {
-            synchronized(keyDealer) {
-                playerSetQueue.clear();
-            }
+    private void removeAllCardsFromTable(boolean timedOut) {
+        exclusive(LockProfiler.TABLE, table, () -> {
+            env.journal.reshuffle();
+            if(timedOut)
+                env.analytics.reshuffled(table.currentHints().size());
+            drainClaims();
+            claims.clear();
+            int count;
+            while ((count = commands.drainTo(batch)) > 0)
+                for (int i = 0; i < count; i++)
+                    players[(int) (batch[i] >>> 32)].commandApplied();
            
         // TODO implement
             for(Player player : players) {
-                synchronized(player.keyPlayer) {
-                    player.keyPlayer.notifyAll();
-                    int tokenSize = player.tokens.size();
-                    for(int i=0; i<tokenSize; i++) {
-                        table.removeToken(player.id, player.tokens.poll());
+                exclusive(LockProfiler.PLAYER, player.keyPlayer, () -> {
+                    player.claimHandled();
+                    for(int slot : player.tokenSlots()) {
+                        table.removeToken(player.id, slot);
                     }
-                    player.pressedKeys.clear();
-                }
+                    player.tokensClear();
+                    player.clearKeyPresses();
+                });
             }
             for(int i =0; i<env.config.tableSize; i++) {
-                if(table.slotToCard[i] != null) {
-                    deck.add(table.slotToCard[i]);
+                if(table.slotToCard[i] != Table.EMPTY) {
+                    returnCard(table.slotToCard[i]);
                     table.removeCard(i);
                 }
             }
-            Collections.shuffle(deck);   
-        }
+            table.publish();
+        });
+    }
 
-}
+    /**
+     * Appends the results of the game to the leaderboard (if one is configured).
+     */
+    private void recordResults() {
+        if (env.config.leaderboardFile.isEmpty()) return;
+        int[] scores = new int[players.length];
+        for (Player player : players)
+            scores[player.id] = player.score();
+        try (Leaderboard leaderboard = Leaderboard.open(Paths.get(env.config.leaderboardFile))) {
+            leaderboard.append(env.clock.currentTimeMillis(), env.config.playerNames, scores);
+        } catch (IOException | IllegalArgumentException e) {
+            env.logger.severe("cannot record the game results: " + e.getMessage());
+        }
+    }
 
     /**
      * Check who is/are the winner/s and displays them.
@@ -314,6 +548,7 @@ private void updateFreezeDisplay() {
             winnersArray[i] = winner.id;
         }
         env.ui.announceWinner(winnersArray);
+        recordResults();
 
     }
 
@@ -321,21 +556,12 @@ private void updateFreezeDisplay() {
         for(int i=0 ; i<3 ; i++ ) {
             int slot = table.cardToSlot[cards[i]];
             table.removeCard(slot);
-            for (Player player : players) {
-                table.removeToken(player.id, slot);
-                if (player.id != playerClaimsSet.id) {  
-                    if (player.tokensContains(slot)) {
-                        player.tokensRemove(slot);
-                        synchronized(player.keyPlayer) {
-                            player.keyPlayer.notifyAll();
-                        }
-                    }   
-                } else {
-                    table.removeToken(playerClaimsSet.id, slot);
-                }
-            }
-            
+            // only the players that actually have a token on the slot are touched
+            if (!table.removeTokens(slot, tokenOwners)) continue;
+            for (int word = 0; word < tokenOwners.length; ++word)
+                for (long mask = tokenOwners[word]; mask != 0; mask &= mask - 1)
+                    players[word * Long.SIZE + Long.numberOfTrailingZeros(mask)].tokensRemove(slot);
         }
-        playerClaimsSet.tokens.clear();
+        playerClaimsSet.tokensClear();
     }
 }
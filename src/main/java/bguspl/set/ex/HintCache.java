@@ -0,0 +1,45 @@
+package bguspl.set.ex;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A bounded least-recently-used cache of the legal sets found among a composition of cards (the cards on the table,
+ * regardless of the slots they are in).
+ */
+class HintCache {
+
+    private final Map<BitSet, List<int[]>> sets;
+
+    /**
+     * @param capacity - the maximal number of card compositions to remember.
+     */
+    HintCache(int capacity) {
+        sets = new LinkedHashMap<BitSet, List<int[]>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BitSet, List<int[]>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the sets among the given cards, finding them only if this composition is not cached.
+     *
+     * @param cards  - the cards (as a set of card ids); must not be modified afterwards.
+     * @param finder - finds the sets of a composition that is not cached.
+     * @return - an unmodifiable list of the sets.
+     */
+    synchronized List<int[]> get(BitSet cards, Function<BitSet, List<int[]>> finder) {
+        List<int[]> found = sets.get(cards);
+        if (found == null) {
+            found = Collections.unmodifiableList(finder.apply(cards));
+            sets.put(cards, found);
+        }
+        return found;
+    }
+}
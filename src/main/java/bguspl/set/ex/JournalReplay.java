@@ -0,0 +1,131 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.GameJournal;
+import bguspl.set.UserInterfaceDecorator;
+import bguspl.set.UtilImpl;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Replays a binary game journal (see {@link GameJournal}) through a {@link Table} at full speed, re-validating every
+ * claim and checking that the claimed cards were on the table, then prints a summary of the game.
+ * Usage: JournalReplay journal-file
+ */
+public class JournalReplay {
+
+    /**
+     * The outcome of a replay: the table as the journal left it, and what happened in the game.
+     */
+    static class Result {
+
+        final Table table;
+        final int[] points;
+        final int[] penalties;
+        final long[] freezeMillis;
+        long events, reshuffles, mismatches, durationMillis;
+
+        private Result(Table table, int players) {
+            this.table = table;
+            points = new int[players];
+            penalties = new int[players];
+            freezeMillis = new long[players];
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("usage: JournalReplay journal-file");
+            return;
+        }
+
+        try (GameJournal.Reader journal = new GameJournal.Reader(Paths.get(args[0]))) {
+            Result result = replay(journal, System.out);
+            System.out.println("events: " + result.events + ", duration: " + result.durationMillis + "ms, reshuffles: " +
+                    result.reshuffles + ", cards left on table: " + result.table.countCards() + ", mismatches: " +
+                    result.mismatches);
+            for (int player = 0; player < result.points.length; ++player)
+                System.out.println("player " + (player + 1) + ": points " + result.points[player] + ", penalties " +
+                        result.penalties[player] + ", frozen " + result.freezeMillis[player] + "ms");
+        }
+    }
+
+    /**
+     * Replays a journal through a new table.
+     *
+     * @param journal - the journal, positioned after its header.
+     * @param out     - where to print the mismatches and the random seed.
+     * @return - the outcome of the replay.
+     * @throws IOException - if the journal cannot be read.
+     */
+    static Result replay(GameJournal.Reader journal, PrintStream out) throws IOException {
+        Logger logger = Logger.getLogger("JournalReplay");
+        logger.setUseParentHandlers(false);
+
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("FeatureCount", Integer.toString(journal.featureCount));
+        properties.setProperty("FeatureSize", Integer.toString(journal.featureSize));
+        properties.setProperty("Rows", Integer.toString(journal.rows));
+        properties.setProperty("Columns", Integer.toString(journal.columns));
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(journal.players));
+        properties.setProperty("TableDelaySeconds", "0");
+        Config config = new Config(logger, properties);
+        logger.setLevel(Level.OFF);
+
+        Env env = new Env(logger, config, new UserInterfaceDecorator(null), new UtilImpl(config));
+        Table table = new Table(env);
+        Result result = new Result(table, config.players);
+        long startMillis = journal.millis;
+
+        for (int type = journal.next(); type != 0; type = journal.next()) {
+            ++result.events;
+            switch (type) {
+                case GameJournal.PLACE_CARD:
+                    table.placeCard(journal.card, journal.slot);
+                    break;
+                case GameJournal.REMOVE_CARD:
+                    table.removeCard(journal.slot);
+                    break;
+                case GameJournal.PLACE_TOKEN:
+                    table.placeToken(journal.player, journal.slot);
+                    break;
+                case GameJournal.REMOVE_TOKEN:
+                    table.removeToken(journal.player, journal.slot);
+                    break;
+                case GameJournal.CLAIM:
+                    boolean valid = env.util.testSet(journal.cards);
+                    boolean onTable = Arrays.stream(journal.cards).allMatch(card -> table.cardToSlot[card] != Table.EMPTY);
+                    if (valid != journal.valid || !onTable) {
+                        ++result.mismatches;
+                        out.println("mismatch at +" + (journal.millis - startMillis) + "ms: player " +
+                                (journal.player + 1) + " claimed " + Arrays.toString(journal.cards) +
+                                " recorded " + (journal.valid ? "valid" : "invalid") +
+                                (onTable ? "" : " (cards not on the table)"));
+                    }
+                    if (journal.valid) ++result.points[journal.player];
+                    else ++result.penalties[journal.player];
+                    break;
+                case GameJournal.FREEZE:
+                    result.freezeMillis[journal.player] += journal.value;
+                    break;
+                case GameJournal.RESHUFFLE:
+                    ++result.reshuffles;
+                    break;
+                case GameJournal.SEED:
+                    out.println("random seed: " + journal.value);
+                    break;
+            }
+        }
+        result.durationMillis = journal.millis - startMillis;
+        return result;
+    }
+}
@@ -0,0 +1,86 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-capacity ring of the key presses (slots) a player did not handle yet. There is a single producer (the thread
+ * delivering the player's key presses: the keyboard event thread or the computer player's thread) and a consumer (the
+ * player's thread), but the pending presses may also be discarded by another thread (the dealer, on reshuffle).
+ * Nothing is allocated or boxed, and offering to a full ring fails instead of blocking.
+ */
+class KeyPressBuffer {
+
+    /**
+     * Returned by poll when there is no pending key press.
+     */
+    static final int EMPTY = -1;
+
+    private final int capacity;
+    private final int mask;
+    private final int[] slots;
+
+    /**
+     * The number of key presses ever taken or discarded (the consumer and clear race on it, hence the CAS).
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The number of key presses ever added (only written by the producer).
+     */
+    private volatile long tail;
+
+    /**
+     * @param capacity - the maximal number of pending key presses.
+     */
+    KeyPressBuffer(int capacity) {
+        this.capacity = capacity;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        slots = new int[size];
+    }
+
+    /**
+     * Adds a key press (must only be called by the producer).
+     *
+     * @param slot - the slot of the key pressed.
+     * @return - true iff the key press was added (i.e. the ring was not full).
+     */
+    boolean offer(int slot) {
+        long t = tail;
+        if (t - head.get() >= capacity) return false;
+        slots[(int) t & mask] = slot;
+        tail = t + 1;
+        return true;
+    }
+
+    /**
+     * Takes the oldest pending key press.
+     *
+     * @return - the slot of the key pressed, or EMPTY if there is none.
+     */
+    int poll() {
+        while (true) {
+            long h = head.get();
+            if (h == tail) return EMPTY;
+            // the producer does not reuse the entry before head moves past it, so it is read before claiming it
+            int slot = slots[(int) h & mask];
+            if (head.compareAndSet(h, h + 1)) return slot;
+        }
+    }
+
+    /**
+     * Discards all the pending key presses (may be called by any thread).
+     */
+    void clear() {
+        long h;
+        long t;
+        do {
+            h = head.get();
+            t = tail;
+        } while (h < t && !head.compareAndSet(h, t));
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail;
+    }
+}
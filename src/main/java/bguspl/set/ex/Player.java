@@ -1,10 +1,13 @@
 package bguspl.set.ex;
 
-import java.util.Iterator;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+import bguspl.set.EngineMode;
 import bguspl.set.Env;
+import bguspl.set.LockProfiler;
 
 /**
  * This class manages the players' threads and data
@@ -54,13 +57,78 @@ public class Player implements Runnable {
      */
     private int score;
 
-    public BlockingQueue<Integer> pressedKeys;
-    public BlockingQueue<Integer> tokens;
+    /**
+     * The key presses the player did not handle yet (locking engine mode), of which there are at most
+     * MAX_PENDING_KEY_PRESSES.
+     */
+    private static final int MAX_PENDING_KEY_PRESSES = 3;
+    private final KeyPressBuffer keyPresses = new KeyPressBuffer(MAX_PENDING_KEY_PRESSES);
+
+    /**
+     * How long (in game time) a computer player waits after a key press that was not accepted.
+     */
+    private static final long AI_BACKOFF_MILLIS = 10;
+
+    /**
+     * The slots the player placed tokens on, as a bit mask of Table.words(tableSize) words (a single long unless the
+     * table has more than 64 slots), and the number of tokens placed or being placed. A token is counted before its bit
+     * is set and after it is cleared, so the count never drops below the number of bits and never exceeds 3; it only
+     * enforces the limit, while the number of tokens the player has is read from the mask.
+     */
+    private final AtomicLongArray tokens;
+    private final AtomicInteger tokenCount = new AtomicInteger();
 
     private final Dealer dealer;
     public Object keyPlayer;
     public long freezeTime;
-    public boolean frozen;
+    public volatile boolean frozen;
+
+    /**
+     * True iff the player submitted a claim that the dealer did not handle yet (guarded by keyPlayer).
+     */
+    private boolean claimPending;
+
+    /**
+     * The System.nanoTime() of the last accepted key press, and of the one completing the pending claim.
+     */
+    volatile long keyPressNanos;
+    public long claimNanos;
+
+    /**
+     * The number of key presses submitted to the dealer and not applied yet (single-writer and actor engine modes).
+     */
+    private final AtomicInteger pendingCommands = new AtomicInteger();
+
+    /**
+     * The signals an actor player gets from the dealer. They are flags rather than mailbox messages, so they can
+     * never be lost to a full mailbox and repeated signals collapse into one.
+     */
+    private static final int SIGNAL_UNFREEZE = 1;
+
+    /**
+     * The pool running the player's tasks (null unless the player is an actor), the pending signals, the mailbox of
+     * key presses (each tagged with the key press epoch in the high 32 bits, the slot in the low 32 bits), the batch
+     * of key presses handled by a task, and whether a task is scheduled.
+     */
+    private Executor actorPool;
+    private final AtomicInteger signals = new AtomicInteger();
+    private final CommandQueue mailbox = new CommandQueue(MAX_PENDING_KEY_PRESSES);
+    private final long[] messages = new long[MAX_PENDING_KEY_PRESSES];
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Incremented whenever the pending key presses are discarded, so that an actor drops the presses still in its
+     * mailbox from before.
+     */
+    private final AtomicInteger keyPressEpoch = new AtomicInteger();
+
+    /**
+     * The cards of the pending claim and whether they form a legal set, as computed by the player against the given
+     * table version (-1 if the claim could not be computed). Published to the dealer through playerSetQueue.
+     */
+    public final int[] claimCards = new int[3];
+    public boolean claimValid;
+    public long claimVersion = -1;
 
 
     /**
@@ -78,8 +146,7 @@ public class Player implements Runnable {
         this.id = id;
         this.human = human;
         this.dealer = dealer;
-        tokens = new LinkedBlockingQueue<Integer>(3);
-        pressedKeys = new LinkedBlockingQueue<Integer>();
+        tokens = new AtomicLongArray(Table.words(env.config.tableSize));
         keyPlayer = new Object();
         freezeTime = 0;
         frozen = false;
@@ -92,73 +159,210 @@ public class Player implements Runnable {
     public void run() {
         playerThread = Thread.currentThread();
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
+        env.clock.register();
         if (!human) createArtificialIntelligence();
 
         while (!terminate) {
             // TODO implement main player loop
 
             synchronized(keyPlayer) {
-                while(frozen) {
-                    freeze(freezeTime-System.currentTimeMillis());
-                }
+                try {
+                    // wait on keyPlayer (rather than sleep) so the dealer can still reach the player's tokens meanwhile;
+                    // the dealer's timers release the player
+                    while (frozen && !terminate)
+                        env.clock.await(keyPlayer, 0);
+                    // idle until a key is pressed
+                    while (keyPresses.isEmpty() && !terminate)
+                        env.clock.await(keyPlayer, 0);
+                } catch (InterruptedException ignored) {}
             }
 
-            while(!pressedKeys.isEmpty()) {
-                int pressedKey = pressedKeys.poll();
-                if(table.slotToCard[pressedKey] != null) {
-                    if(tokensContains(pressedKey)) {
-                        tokensRemove(pressedKey);
-                        synchronized(table) {
-                            table.removeToken(id, pressedKey);
-                        }
-                    } else {
-                        boolean added = tokensAdd(pressedKey);
-                        if (added){
-                        synchronized(table) {
-                            if(table.slotToCard[pressedKey] != null)
-                                table.placeToken(id, pressedKey);
-                        }
-                        }
-                        if(tokensSize() == 3 && added) {
-                            synchronized(dealer.keyDealer) {
-                                dealer.playerSetQueue.offer(this);
-                                dealer.keyDealer.notify();
-                                
-                            }
-                            
-                            synchronized (keyPlayer) {
-                                try {
-                                    keyPlayer.wait(); 
-                                }  catch (InterruptedException e) {}
-                                
-                            }
-                        }
+            int pressedKey;
+            while((pressedKey = keyPresses.poll()) != KeyPressBuffer.EMPTY) {
+                if(toggleToken(pressedKey)) {
+                    submitClaim();
+                    synchronized (keyPlayer) {
+                        try {
+                            while (claimPending && !terminate)
+                                env.clock.await(keyPlayer, 0);
+                        }  catch (InterruptedException e) {}
+                        
                     }
-
-                }  
+                    break; // the verdict may have frozen the player
+                }
         }
         
     }
         if (!human) try { aiThread.join(); } catch (InterruptedException ignored) {}
+        env.clock.unregister();
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
 }
    
 
 
+    /**
+     * Places the player's token on a slot, or removes it if it is there already.
+     *
+     * @param slot - the slot corresponding to the key pressed.
+     * @return - true iff a third token was placed (i.e. the player should claim a set).
+     */
+    private boolean toggleToken(int slot) {
+        if(table.slotToCard[slot] == Table.EMPTY) return false;
+        if(tokensContains(slot)) {
+            tokensRemove(slot);
+            env.locks.run(LockProfiler.TABLE, table, () -> table.removeToken(id, slot));
+            return false;
+        }
+        boolean added = tokensAdd(slot);
+        if (added){
+            env.locks.run(LockProfiler.TABLE, table, () -> {
+                if(table.slotToCard[slot] != Table.EMPTY)
+                    table.placeToken(id, slot);
+                else
+                    tokensRemove(slot); // the card was taken meanwhile
+            });
+        }
+        return added && tokensSize() == 3;
+    }
+
+    /**
+     * Hands the player's claim over to the dealer (the verdict is signalled through claimHandled).
+     */
+    private void submitClaim() {
+        claimNanos = keyPressNanos;
+        env.metrics.claimSubmitted();
+        validateClaim();
+        synchronized (keyPlayer) {
+            claimPending = true;
+        }
+        env.locks.run(LockProfiler.DEALER, dealer.keyDealer, () -> {
+            dealer.playerSetQueue.offer(this);
+            env.clock.wake(dealer.keyDealer);
+        });
+    }
+
+    /**
+     * Starts the player as an actor (actor engine mode): instead of running on a thread of its own, the player
+     * handles its key presses and the dealer's signals in tasks on a shared pool, at most one task at a time. The
+     * tasks never block: they hand the token toggles over to the dealer, which owns the table.
+     *
+     * @param pool - the pool running the players' tasks.
+     */
+    public void startActor(Executor pool) {
+        actorPool = pool;
+        env.logger.info("player " + id + " starting as an actor.");
+        if (!human) createArtificialIntelligence();
+    }
+
+    /**
+     * Starts the player without a thread of its own (single-writer engine mode): the dealer applies the player's key
+     * presses, so only a computer player's key press generator is started.
+     */
+    public void startWithoutThread() {
+        env.logger.info("player " + id + " starting without a thread.");
+        if (!human) createArtificialIntelligence();
+    }
+
+    /**
+     * Adds a key press to the player's mailbox, and schedules a task handling it. When the mailbox is full, the key
+     * press is dropped (and counted).
+     *
+     * @return - true iff the key press was accepted.
+     */
+    private boolean postKeyPress(int slot) {
+        if (mailbox.offer((long) keyPressEpoch.get() << 32 | slot)) {
+            schedule();
+            return true;
+        }
+        env.metrics.keyPressDropped();
+        return false;
+    }
+
+    /**
+     * Hands a key press over to the dealer, unless the player already has MAX_PENDING_KEY_PRESSES pending there or the
+     * dealer's queue is full, in which case the key press is dropped (and counted).
+     *
+     * @return - true iff the key press was accepted.
+     */
+    private boolean submitKeyPress(int slot) {
+        if (pendingCommands.incrementAndGet() <= MAX_PENDING_KEY_PRESSES) {
+            keyPressNanos = System.nanoTime();
+            if (dealer.submitKeyPress(this, slot)) return true;
+        }
+        pendingCommands.decrementAndGet();
+        env.metrics.keyPressDropped();
+        return false;
+    }
+
+    /**
+     * Raises a signal for the player, and schedules a task handling it.
+     */
+    private void signal(int signal) {
+        signals.getAndAccumulate(signal, (pending, raised) -> pending | raised);
+        schedule();
+    }
+
+    /**
+     * Schedules a task handling the signals and the mailbox, unless one is scheduled already. The task takes part in
+     * the game (see GameClock::register) from now until it ends, so the game time does not skip ahead meanwhile.
+     */
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            env.clock.register();
+            actorPool.execute(this::handleMessages);
+        }
+    }
+
+    /**
+     * The task of an actor player: handles the pending signals and one batch of key presses (sending the token
+     * toggles to the dealer), then lets another task take over if more arrived.
+     */
+    private void handleMessages() {
+        try {
+            if ((signals.getAndSet(0) & SIGNAL_UNFREEZE) != 0) frozen = false;
+            int count = mailbox.drainTo(messages);
+            for (int i = 0; i < count; i++) {
+                if ((int) (messages[i] >>> 32) != keyPressEpoch.get()) continue; // pressed before a reshuffle
+                if (!frozen && !terminate) submitKeyPress((int) messages[i]);
+            }
+            scheduled.set(false);
+            if (signals.get() != 0 || !mailbox.isEmpty()) schedule();
+        } finally {
+            env.clock.unregister();
+        }
+    }
+
+    /**
+     * Discards the key presses the player did not handle yet (called by the dealer on reshuffle).
+     */
+    void clearKeyPresses() {
+        keyPresses.clear();
+        keyPressEpoch.incrementAndGet();
+    }
+
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * key presses. If a key press is not accepted (the player is frozen, or the queue of key presses is full), the
+     * thread waits for AI_BACKOFF_MILLIS of game time, or until the player is woken. The thread takes part in the game
+     * (see GameClock::register), so the game time only skips ahead while it waits.
      */
     private void createArtificialIntelligence() {
         // note: this is a very, very smart AI (!)
        
         aiThread = new Thread(() -> {
             env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
+            env.clock.register();
             while (!terminate) {
                 // TODO implement player key press simulator
                 int rand = (int)(Math.random()*env.config.tableSize);
-                keyPressed(rand);
+                if (offerKeyPress(rand)) continue;
+                synchronized (keyPlayer) {
+                    try {
+                        if (!terminate) env.clock.await(keyPlayer, AI_BACKOFF_MILLIS);
+                    } catch (InterruptedException ignored) {}
+                }
             }
+            env.clock.unregister();
             env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
         }, "computer-" + id);
         aiThread.start();
@@ -174,8 +378,10 @@ public class Player implements Runnable {
                 aiThread.interrupt();
                 aiThread.join();
             }
-            playerThread.interrupt();
-            playerThread.join();
+            if (playerThread != null) {
+                playerThread.interrupt();
+                playerThread.join();
+            }
         } catch (InterruptedException ignored) {
         }
 
@@ -189,11 +395,34 @@ public class Player implements Runnable {
      */ 
     public void keyPressed(int slot) {
         // TODO implement
+        offerKeyPress(slot);
+    }
+
+    /**
+     * Hands a key press over to whoever handles it in the engine mode.
+     *
+     * @param slot - the slot corresponding to the key pressed.
+     * @return - true iff the key press was accepted.
+     */
+    private boolean offerKeyPress(int slot) {
+        if (env.config.engineMode == EngineMode.SINGLE_WRITER) {
+            // the dealer owns the table and the tokens: only hand the key press over to it
+            return !frozen && table.snapshot().card(slot) != Table.EMPTY && submitKeyPress(slot);
+        }
+        if (actorPool != null)
+            return !frozen && table.snapshot().card(slot) != Table.EMPTY && postKeyPress(slot);
         if(!frozen) {
-            if(table.slotToCard[slot] != null && pressedKeys.size() < 3) {
-                pressedKeys.offer(slot);
+            long now = System.nanoTime();
+            // only a hint read without the table monitor: toggleToken checks the card again holding it
+            if(table.snapshot().card(slot) != Table.EMPTY && keyPresses.offer(slot)) {
+                keyPressNanos = now;
+                synchronized (keyPlayer) {
+                    env.clock.wake(keyPlayer);
+                }
+                return true;
             }
         }
+        return false;
     }
 
     /**
@@ -205,7 +434,10 @@ public class Player implements Runnable {
     public void point() {
         // TODO implement
         
-        freezeTime =   900+System.currentTimeMillis() + env.config.pointFreezeMillis;
+        freezeTime =   900+env.clock.currentTimeMillis() + env.config.pointFreezeMillis;
+        env.metrics.playerFrozen(id, env.config.pointFreezeMillis);
+        env.journal.freeze(id, env.config.pointFreezeMillis);
+        env.analytics.setFound(id);
 
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
         env.ui.setScore(id, ++score);
@@ -215,7 +447,10 @@ public class Player implements Runnable {
      * Penalize a player and perform other related actions.
      */
     public void penalty() {
-        freezeTime = 900 + System.currentTimeMillis() + env.config.penaltyFreezeMillis;
+        freezeTime = 900 + env.clock.currentTimeMillis() + env.config.penaltyFreezeMillis;
+        env.metrics.playerFrozen(id, env.config.penaltyFreezeMillis);
+        env.journal.freeze(id, env.config.penaltyFreezeMillis);
+        env.analytics.penalty(id);
         // TODO implement
     }
 
@@ -223,38 +458,100 @@ public class Player implements Runnable {
         return score;
     }
 
-    public void freeze(long freezeTime) {
-        try {
-            if(freezeTime > 900)
-                Thread.sleep(freezeTime-900); 
-        } catch (InterruptedException e) {
+    /**
+     * Called by the dealer when the player's freeze is over.
+     */
+    public void unfreeze() {
+        if (actorPool != null) {
+            signal(SIGNAL_UNFREEZE);
+            return;
         }
-        
         synchronized (keyPlayer) {
             frozen = false;
-            keyPlayer.notify(); 
+            env.clock.wake(keyPlayer);
         }
     }
 
-    public boolean tokensContains(int pressedKey) {
-        synchronized(keyPlayer) {
-            return tokens.contains(pressedKey);
+    /**
+     * Speculatively checks the claim on the player's thread, so that the dealer only has to confirm that the table
+     * did not change since (see Table::version).
+     */
+    private void validateClaim() {
+        long version = table.version();
+        int[] slots = tokenSlots();
+        claimVersion = -1;
+        if (slots.length != claimCards.length) return;
+        for (int i = 0; i < slots.length; ++i) {
+            int card = table.slotToCard[slots[i]];
+            if (card == Table.EMPTY) return;
+            claimCards[i] = card;
         }
+        claimValid = env.util.testSet(claimCards);
+        claimVersion = version;
     }
-    public void tokensRemove(int pressedKey) {
-        synchronized(keyPlayer) {
-            tokens.remove(pressedKey);
+
+    /**
+     * Called by the dealer for every submitted key press it applied (or dropped).
+     */
+    void commandApplied() {
+        pendingCommands.decrementAndGet();
+    }
+
+    /**
+     * Called by the dealer once the player's claim was handled (or dropped), to let the player go on.
+     */
+    public void claimHandled() {
+        // in the other modes the dealer handles the claim as it places the third token, so nobody waits for it
+        if (env.config.engineMode != EngineMode.LOCKING) return;
+        synchronized (keyPlayer) {
+            claimPending = false;
+            env.clock.wake(keyPlayer);
         }
     }
+
+    public boolean tokensContains(int pressedKey) {
+        return (tokens.get(pressedKey / Long.SIZE) & 1L << pressedKey) != 0;
+    }
+    public void tokensRemove(int pressedKey) {
+        long bit = 1L << pressedKey;
+        if ((tokens.getAndUpdate(pressedKey / Long.SIZE, word -> word & ~bit) & bit) != 0)
+            tokenCount.decrementAndGet();
+    }
     public boolean tokensAdd(int pressedKey) {
-        synchronized(keyPlayer) {
-            return tokens.offer(pressedKey);
+        if (tokenCount.incrementAndGet() > 3) {
+            tokenCount.decrementAndGet();
+            return false;
         }
+        long bit = 1L << pressedKey;
+        if ((tokens.getAndUpdate(pressedKey / Long.SIZE, word -> word | bit) & bit) == 0)
+            return true;
+        tokenCount.decrementAndGet();
+        return false;
     }
     public int tokensSize() {
-        synchronized(keyPlayer) {
-            return tokens.size();
-        }
+        int size = 0;
+        for (int i = 0; i < tokens.length(); ++i)
+            size += Long.bitCount(tokens.get(i));
+        return size;
+    }
+    public void tokensClear() {
+        for (int i = 0; i < tokens.length(); ++i)
+            tokenCount.addAndGet(-Long.bitCount(tokens.getAndSet(i, 0)));
+    }
+
+    /**
+     * @return - the slots the player has tokens on, in ascending order.
+     */
+    public int[] tokenSlots() {
+        long[] words = new long[tokens.length()];
+        int count = 0;
+        for (int i = 0; i < words.length; ++i)
+            count += Long.bitCount(words[i] = tokens.get(i));
+        int[] slots = new int[count];
+        for (int i = 0, j = 0; i < words.length; ++i)
+            for (long mask = words[i]; mask != 0; mask &= mask - 1)
+                slots[j++] = i * Long.SIZE + Long.numberOfTrailingZeros(mask);
+        return slots;
     }
 
 }
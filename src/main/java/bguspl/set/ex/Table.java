@@ -3,15 +3,18 @@ package bguspl.set.ex;
 import bguspl.set.Env;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.BlockingQueue;
-import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 /**
  * This class contains the data that is visible to the player.
  *
- * @inv slotToCard[x] == y iff cardToSlot[y] == x
+ * @inv slotToCard[x] == y iff cardToSlot[y] == x (for y, x != EMPTY)
  */
 public class Table {
 
@@ -21,14 +24,64 @@ public class Table {
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * Marks an empty slot in slotToCard and a card that is not on the table in cardToSlot.
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    public static final int EMPTY = -1;
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * Mapping between a slot and the card placed in it (EMPTY if none).
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
+    protected final int[] slotToCard; // card per slot (if any)
+
+    /**
+     * Mapping between a card and the slot it is in (EMPTY if none).
+     */
+    protected final int[] cardToSlot; // slot per card (if any)
+
+    /**
+     * The boxed mappings given to the testing constructor (null otherwise). They are copied into the primitive
+     * mappings whenever the table reads them (a copy that changes anything counts as a change of the table, see
+     * version) and are kept up to date with every change the table makes.
+     */
+    private final Integer[] boxedSlotToCard;
+    private final Integer[] boxedCardToSlot;
+
+    /**
+     * Incremented after every change of the cards on the table, so that readers can tell whether what they read is
+     * still current.
+     */
+    private volatile long version;
+
+    /**
+     * The sets among the cards on the table, the version they were found for, and the cache they were taken from.
+     */
+    private List<int[]> hints;
+    private long hintsVersion = -1;
+    private final HintCache hintCache = new HintCache(HINT_CACHE_SIZE);
+
+    /**
+     * Whether the cards on the table hold a set, the version that was checked for, and the cards it was checked on.
+     */
+    private boolean hasSet;
+    private long hasSetVersion = -1;
+    private final int[] cardsOnTable;
+
+    /**
+     * The number of card compositions whose sets are remembered.
+     */
+    private static final int HINT_CACHE_SIZE = 64;
+
+    /**
+     * The players having a token on each slot, as a bit mask of playerWords words per slot (a single long unless there
+     * are more than 64 players).
+     */
+    private final int playerWords;
+    private final long[] slotTokens;
+
+    /**
+     * The last published copy of the cards on the table (see publish).
+     */
+    private volatile Snapshot snapshot;
 
     /**
      * Constructor for testing.
@@ -39,9 +92,7 @@ public class Table {
      */
     public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
 
-        this.env = env;
-        this.slotToCard = slotToCard;
-        this.cardToSlot = cardToSlot;
+        this(env, slotToCard.length, cardToSlot.length, slotToCard, cardToSlot);
     }
 
     /**
@@ -51,20 +102,186 @@ public class Table {
      */
     public Table(Env env) {
 
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, env.config.tableSize, env.config.deckSize, null, null);
+    }
+
+    private Table(Env env, int tableSize, int deckSize, Integer[] boxedSlotToCard, Integer[] boxedCardToSlot) {
+
+        this.env = env;
+        this.slotToCard = new int[tableSize];
+        this.cardsOnTable = new int[tableSize];
+        this.cardToSlot = new int[deckSize];
+        Arrays.fill(slotToCard, EMPTY);
+        Arrays.fill(cardToSlot, EMPTY);
+        this.boxedSlotToCard = boxedSlotToCard;
+        this.boxedCardToSlot = boxedCardToSlot;
+        this.playerWords = words(env.config.players);
+        this.slotTokens = new long[tableSize * playerWords];
+        this.snapshot = new Snapshot(-1, slotToCard.clone());
+    }
+
+    /**
+     * An immutable copy of the cards on the table, for threads that read the table without synchronizing with its
+     * writer.
+     */
+    public static class Snapshot {
+
+        /**
+         * The version of the table the copy was taken at.
+         */
+        public final long version;
+        private final int[] slotToCard;
+
+        private Snapshot(long version, int[] slotToCard) {
+            this.version = version;
+            this.slotToCard = slotToCard;
+        }
+
+        /**
+         * @param slot - a slot on the table.
+         * @return - the card in the slot (EMPTY if none).
+         */
+        public int card(int slot) {
+            return slotToCard[slot];
+        }
+    }
+
+    /**
+     * Publishes a copy of the current cards on the table (if they changed since the last one was published).
+     */
+    public synchronized void publish() {
+        readBoxed();
+        if (snapshot.version != version)
+            snapshot = new Snapshot(version, slotToCard.clone());
+    }
+
+    /**
+     * @return - the last published copy of the cards on the table.
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Copies the boxed mappings given to the testing constructor (if any) into the primitive mappings, and bumps the
+     * version if they were edited meanwhile.
+     */
+    private void readBoxed() {
+        if (boxedSlotToCard == null) return;
+        boolean changed = false;
+        for (int slot = 0; slot < slotToCard.length; ++slot) {
+            int card = boxedSlotToCard[slot] == null ? EMPTY : boxedSlotToCard[slot];
+            changed |= slotToCard[slot] != card;
+            slotToCard[slot] = card;
+        }
+        for (int card = 0; card < cardToSlot.length; ++card) {
+            int slot = boxedCardToSlot[card] == null ? EMPTY : boxedCardToSlot[card];
+            changed |= cardToSlot[card] != slot;
+            cardToSlot[card] = slot;
+        }
+        if (changed) ++version;
+    }
+
+    /**
+     * Updates the boxed mappings given to the testing constructor (if any) after a card was placed or removed.
+     */
+    private void writeBoxed(int card, int slot, boolean placed) {
+        if (boxedSlotToCard == null) return;
+        boxedSlotToCard[slot] = placed ? card : null;
+        boxedCardToSlot[card] = placed ? slot : null;
     }
 
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
+     * The text is handed to a background printer, so the caller never blocks on console output.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
-            StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
+        readBoxed();
+        StringBuilder sb = new StringBuilder();
+        int[] slots = new int[env.config.featureSize];
+        for (int[] set : currentHints()) {
+            for (int i = 0; i < set.length; ++i)
+                slots[i] = cardToSlot[set[i]];
+            Arrays.sort(slots);
             int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
-        });
+            sb.append("Hint: Set found: slots: [");
+            for (int i = 0; i < slots.length; ++i)
+                sb.append(i == 0 ? "" : ", ").append(slots[i]);
+            sb.append("] features: ").append(Arrays.deepToString(features)).append(System.lineSeparator());
+        }
+        if (sb.length() > 0) HintPrinter.print(sb.toString());
+    }
+
+    /**
+     * Checks whether the cards on the table hold a legal set. The search stops at the first set found, and is only
+     * repeated after the table changed.
+     *
+     * @return - true iff some of the cards on the table form a legal set.
+     */
+    public synchronized boolean hasSet() {
+        readBoxed();
+        if (hasSetVersion != version) {
+            if (hintsVersion == version) {
+                hasSet = !hints.isEmpty();
+            } else {
+                int count = 0;
+                for (int card : slotToCard)
+                    if (card != EMPTY)
+                        cardsOnTable[count++] = card;
+                hasSet = !env.util.findSets(cardsOnTable, count, 1).isEmpty();
+            }
+            hasSetVersion = version;
+        }
+        return hasSet;
+    }
+
+    /**
+     * Returns all the legal sets among the cards currently on the table. The sets of a card composition are only
+     * searched for once (while it stays in the cache), however often the same cards are dealt again.
+     *
+     * @return - an unmodifiable list of the sets (as arrays of card ids).
+     */
+    public synchronized List<int[]> currentHints() {
+        readBoxed();
+        if (hintsVersion != version) {
+            BitSet cards = new BitSet(cardToSlot.length);
+            for (int card : slotToCard)
+                if (card != EMPTY)
+                    cards.set(card);
+            hints = hintCache.get(cards,
+                    composition -> env.util.findSets(composition.stream().toArray(), composition.cardinality(), Integer.MAX_VALUE));
+            hintsVersion = version;
+        }
+        return hints;
+    }
+
+    /**
+     * Prints hints on a background daemon thread. When the console falls behind, the oldest pending hints are dropped.
+     */
+    private static class HintPrinter {
+
+        private static final int MAX_PENDING = 16;
+
+        private static final ExecutorService printer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING), runnable -> {
+                    Thread thread = new Thread(runnable, "hint-printer");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardOldestPolicy());
+
+        private static void print(String text) {
+            printer.execute(() -> {
+                System.out.print(text);
+                System.out.flush();
+            });
+        }
+    }
+
+    /**
+     * @return - the version of the cards on the table (changes whenever a card is placed or removed).
+     */
+    public long version() {
+        return version;
     }
 
     /**
@@ -73,9 +290,10 @@ public class Table {
      * @return - the number of cards on the table.
      */
     public int countCards() {
+        readBoxed();
         int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
+        for (int card : slotToCard)
+            if (card != EMPTY)
                 ++cards;
         return cards;
     }
@@ -89,13 +307,17 @@ public class Table {
      */
     public synchronized void placeCard(int card, int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
+        readBoxed();
         cardToSlot[card] = slot;
         slotToCard[slot] = card;
+        writeBoxed(card, slot, true);
+        ++version;
 
         // TODO implement
+        env.journal.placeCard(card, slot);
 
         env.ui.placeCard(card, slot);
     }
@@ -106,15 +328,20 @@ public class Table {
      */
     public synchronized void removeCard(int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
         // TODO implement
 
-        if(slotToCard[slot] != null) {
+        readBoxed();
+        if(slotToCard[slot] != EMPTY) {
             int card = slotToCard[slot];
-            slotToCard[slot] = null;
-            cardToSlot[card] = null;
-            env.logger.info("Slot " + slot + " is now null");
+            slotToCard[slot] = EMPTY;
+            cardToSlot[card] = EMPTY;
+            writeBoxed(card, slot, false);
+            ++version;
+            if (env.logger.isLoggable(Level.INFO))
+                env.logger.info("Slot " + slot + " is now null");
+            env.journal.removeCard(slot);
 
             env.ui.removeCard(slot);
         }
@@ -127,6 +354,8 @@ public class Table {
      */
     public synchronized void placeToken(int player, int slot) {
         // TODO implement
+        slotTokens[slot * playerWords + player / Long.SIZE] |= 1L << player;
+        env.journal.placeToken(player, slot);
         env.ui.placeToken(player, slot);
     }
 
@@ -138,7 +367,38 @@ public class Table {
      */
     public synchronized boolean removeToken(int player, int slot) {
         // TODO implement
+        int word = slot * playerWords + player / Long.SIZE;
+        if ((slotTokens[word] & 1L << player) == 0) return false;
+        slotTokens[word] &= ~(1L << player);
+        env.journal.removeToken(player, slot);
         env.ui.removeToken(player, slot);
         return true;
     }
+
+    /**
+     * Removes the tokens of all the players from a grid slot.
+     * @param slot   - the slot from which to remove the tokens.
+     * @param owners - filled with the players whose tokens were removed, as a bit mask of words(players) words.
+     * @return       - true iff any token was removed.
+     */
+    public synchronized boolean removeTokens(int slot, long[] owners) {
+        boolean removed = false;
+        for (int i = 0, word = slot * playerWords; i < playerWords; ++i, ++word) {
+            owners[i] = slotTokens[word];
+            slotTokens[word] = 0;
+            for (long mask = owners[i]; mask != 0; mask &= mask - 1)
+                env.journal.removeToken(i * Long.SIZE + Long.numberOfTrailingZeros(mask), slot);
+            removed |= owners[i] != 0;
+        }
+        if (removed) env.ui.removeTokens(slot);
+        return removed;
+    }
+
+    /**
+     * @param bits - a number of bits.
+     * @return     - the number of longs a bit mask of that many bits takes.
+     */
+    public static int words(int bits) {
+        return (bits + Long.SIZE - 1) / Long.SIZE;
+    }
 }
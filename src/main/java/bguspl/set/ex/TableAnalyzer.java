@@ -0,0 +1,236 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Estimates, by sampling random tables on all cores, how often a table of a given size holds no set, how many sets it
+ * holds on average, and how many rounds (deals between reshuffles) it takes to exhaust the deck when the players always
+ * take a set while there is one and the dealer reshuffles as soon as there is none. Every worker draws from its own
+ * random generator, split from the seed, so the results only depend on the arguments and the number of cores.
+ * Usage: TableAnalyzer [tables [games [seed]]] [featureCount x featureSize : rows x columns ...]
+ */
+public class TableAnalyzer {
+
+    private static final String[] DEFAULT_CONFIGURATIONS = {"3x3:3x3", "3x3:3x4", "4x3:3x3", "4x3:3x4", "4x3:3x5", "4x3:3x6"};
+
+    /**
+     * The sums collected by a worker.
+     */
+    static class Tally {
+
+        long tables;
+        long deadTables;
+        long sets;
+        long games;
+        long rounds;
+        long setsTaken;
+
+        void add(Tally other) {
+            tables += other.tables;
+            deadTables += other.deadTables;
+            sets += other.sets;
+            games += other.games;
+            rounds += other.rounds;
+            setsTaken += other.setsTaken;
+        }
+    }
+
+    /**
+     * Samples tables and plays games of a single configuration with its own random generator.
+     */
+    static class Worker {
+
+        private final Util util;
+        private final Config config;
+        private final SplittableRandom random;
+        final int[] deck;
+        private final int[] table;
+
+        /**
+         * The slot triples of the table, checked in bulk (only used when sets are triples and there are at most
+         * MAX_TRIPLES of them, larger tables are searched with findSets).
+         */
+        private static final int MAX_TRIPLES = 1 << 18;
+        private final int[] first, second, third;
+        private final int[] a, b, c;
+        private final boolean[] legal;
+
+        Worker(Util util, Config config, SplittableRandom random) {
+            this.util = util;
+            this.config = config;
+            this.random = random;
+            deck = new int[config.deckSize];
+            table = new int[config.tableSize];
+            for (int card = 0; card < deck.length; ++card)
+                deck[card] = card;
+
+            int n = Math.min(config.tableSize, config.deckSize);
+            long combinations = (long) n * (n - 1) * (n - 2) / 6;
+            int triples = config.featureSize == 3 && combinations <= MAX_TRIPLES ? (int) combinations : 0;
+            first = new int[triples];
+            second = new int[triples];
+            third = new int[triples];
+            for (int i = 0, t = 0; i < n && triples > 0; ++i)
+                for (int j = i + 1; j < n; ++j)
+                    for (int k = j + 1; k < n; ++k, ++t) {
+                        first[t] = i;
+                        second[t] = j;
+                        third[t] = k;
+                    }
+            a = new int[triples];
+            b = new int[triples];
+            c = new int[triples];
+            legal = new boolean[triples];
+        }
+
+        Tally run(long tables, long games) {
+            Tally tally = new Tally();
+            int n = Math.min(config.tableSize, config.deckSize);
+            for (long i = 0; i < tables; ++i) {
+                // a partial Fisher-Yates shuffle puts a random table at the start of the deck
+                for (int j = 0; j < n; ++j)
+                    swap(deck, j, j + random.nextInt(deck.length - j));
+                int sets = countSets(n);
+                ++tally.tables;
+                tally.sets += sets;
+                if (sets == 0) ++tally.deadTables;
+            }
+            for (long i = 0; i < games; ++i)
+                play(tally);
+            return tally;
+        }
+
+        /**
+         * @return - the number of sets among the first n cards of the deck.
+         */
+        int countSets(int n) {
+            if (legal.length == 0) return util.findSets(deck, n, Integer.MAX_VALUE).size();
+            for (int t = 0; t < legal.length; ++t) {
+                a[t] = deck[first[t]];
+                b[t] = deck[second[t]];
+                c[t] = deck[third[t]];
+            }
+            util.testSets(a, b, c, legal);
+            int sets = 0;
+            for (boolean isSet : legal)
+                if (isSet) ++sets;
+            return sets;
+        }
+
+        /**
+         * Plays a game: deals, takes random sets and refills until the table holds no set, then returns the table to
+         * the deck and deals again, until the remaining cards hold no set.
+         */
+        private void play(Tally tally) {
+            int remaining = deck.length;
+            while (!util.findSets(deck, remaining, 1).isEmpty()) {
+                ++tally.rounds;
+                int onTable = 0;
+                while (true) {
+                    while (onTable < table.length && remaining > 0) {
+                        int i = random.nextInt(remaining);
+                        table[onTable++] = deck[i];
+                        deck[i] = deck[--remaining];
+                    }
+                    List<int[]> sets = util.findSets(table, onTable, Integer.MAX_VALUE);
+                    if (sets.isEmpty()) break;
+                    for (int card : sets.get(random.nextInt(sets.size())))
+                        for (int slot = 0; slot < onTable; ++slot)
+                            if (table[slot] == card) {
+                                table[slot] = table[--onTable];
+                                break;
+                            }
+                    ++tally.setsTaken;
+                }
+                while (onTable > 0)
+                    deck[remaining++] = table[--onTable];
+            }
+            ++tally.games;
+
+            // restore the full deck for the next game
+            for (int card = 0; card < deck.length; ++card)
+                deck[card] = card;
+        }
+
+        private static void swap(int[] array, int i, int j) {
+            int temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        long[] numbers = {1_000_000, 10_000, 1};
+        int numeric = 0;
+        while (numeric < Math.min(args.length, numbers.length) && args[numeric].matches("\\d+"))
+            numbers[numeric] = Long.parseLong(args[numeric++]);
+        String[] configurations = numeric < args.length ? Arrays.copyOfRange(args, numeric, args.length)
+                : DEFAULT_CONFIGURATIONS;
+        long tables = numbers[0], games = numbers[1];
+        SplittableRandom seed = new SplittableRandom(numbers[2]);
+
+        Logger logger = Logger.getLogger("TableAnalyzer");
+        logger.setUseParentHandlers(false);
+        int workers = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            System.out.println("tables: " + tables + ", games: " + games + ", workers: " + workers);
+            System.out.printf("%-10s %6s %6s %12s %10s %10s %12s%n",
+                    "config", "deck", "table", "P(no set)", "E[sets]", "E[rounds]", "E[taken]");
+            for (String configuration : configurations) {
+                String[] parts = configuration.split("[x:]");
+                if (parts.length != 4) {
+                    System.out.println("invalid configuration (expected featureCount x featureSize : rows x columns): "
+                            + configuration);
+                    continue;
+                }
+                Properties properties = new Properties();
+                properties.setProperty("LogLevel", "OFF");
+                properties.setProperty("FeatureCount", parts[0]);
+                properties.setProperty("FeatureSize", parts[1]);
+                properties.setProperty("Rows", parts[2]);
+                properties.setProperty("Columns", parts[3]);
+                properties.setProperty("HumanPlayers", "0");
+                properties.setProperty("ComputerPlayers", "0");
+                Config config = new Config(logger, properties);
+                logger.setLevel(Level.OFF);
+                Util util = new UtilImpl(config);
+
+                List<Future<Tally>> futures = new ArrayList<>(workers);
+                for (int i = 0; i < workers; ++i) {
+                    Worker worker = new Worker(util, config, seed.split());
+                    long workerTables = tables / workers + (i < tables % workers ? 1 : 0);
+                    long workerGames = games / workers + (i < games % workers ? 1 : 0);
+                    futures.add(pool.submit(() -> worker.run(workerTables, workerGames)));
+                }
+                Tally total = new Tally();
+                for (Future<Tally> future : futures)
+                    total.add(future.get());
+
+                double deadRate = (double) total.deadTables / Math.max(1, total.tables);
+                double error = Math.sqrt(deadRate * (1 - deadRate) / Math.max(1, total.tables));
+                System.out.printf("%-10s %6d %6d %12s %10.3f %10.3f %12.3f%n", configuration, config.deckSize,
+                        config.tableSize, String.format("%.5f+-%.5f", deadRate, error),
+                        (double) total.sets / Math.max(1, total.tables),
+                        (double) total.rounds / Math.max(1, total.games),
+                        (double) total.setsTaken / Math.max(1, total.games));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
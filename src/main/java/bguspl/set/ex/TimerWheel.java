@@ -0,0 +1,188 @@
+package bguspl.set.ex;
+
+/**
+ * A hierarchical timing wheel, owned and driven by a single thread. A timer is kept in the lowest level whose current
+ * rotation contains its deadline, and moves down a level each time the level below wraps around. Scheduling and
+ * cancelling take constant time, and advancing the wheel costs one step per elapsed tick plus one per expiring (or
+ * cascading) timer, however many timers are pending.
+ */
+class TimerWheel {
+
+    /**
+     * The number of buckets per level (a power of two) and the number of levels.
+     */
+    private static final int BUCKET_BITS = 6;
+    private static final int BUCKETS = 1 << BUCKET_BITS;
+    private static final int BUCKET_MASK = BUCKETS - 1;
+    private static final int LEVELS = 4;
+
+    /**
+     * A pending action. Timers are linked into the bucket they are in.
+     */
+    static final class Timer {
+
+        private final Runnable action;
+        private long deadlineTick;
+        private int level = -1;
+        private int bucket;
+        private Timer prev;
+        private Timer next;
+
+        private Timer(Runnable action) {
+            this.action = action;
+        }
+
+        /**
+         * @return - true iff the timer did not expire and was not cancelled yet.
+         */
+        boolean pending() {
+            return level >= 0;
+        }
+    }
+
+    private final long tickMillis;
+    private final Timer[][] buckets = new Timer[LEVELS][BUCKETS];
+
+    /**
+     * The next tick to be processed (all the timers of earlier ticks expired already).
+     */
+    private long currentTick;
+    private int pending;
+
+    /**
+     * @param tickMillis - the resolution of the wheel in milliseconds (timers never expire early, and at most one
+     *                   tick late).
+     * @param nowMillis  - the current time in milliseconds.
+     */
+    TimerWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Schedules an action.
+     *
+     * @param deadlineMillis - the time (in milliseconds) at which the action should run.
+     * @param action         - the action to run (on the thread advancing the wheel).
+     * @return - the timer, for cancelling it.
+     */
+    Timer schedule(long deadlineMillis, Runnable action) {
+        Timer timer = new Timer(action);
+        timer.deadlineTick = (deadlineMillis + tickMillis - 1) / tickMillis;
+        place(timer);
+        ++pending;
+        return timer;
+    }
+
+    /**
+     * Cancels a timer (nothing happens if the timer is null, expired or was cancelled already).
+     *
+     * @param timer - the timer to cancel.
+     */
+    void cancel(Timer timer) {
+        if (timer == null || !timer.pending()) return;
+        unlink(timer);
+        --pending;
+    }
+
+    /**
+     * Runs the actions of all the timers whose deadline has passed, in the order of their deadlines.
+     *
+     * @param nowMillis - the current time in milliseconds.
+     */
+    void advance(long nowMillis) {
+        long lastTick = nowMillis / tickMillis;
+        while (currentTick <= lastTick) {
+            if (pending == 0) {
+                currentTick = lastTick + 1;
+                return;
+            }
+            processTick(currentTick);
+            ++currentTick;
+        }
+    }
+
+    /**
+     * @param nowMillis - the current time in milliseconds.
+     * @return - the number of milliseconds until the wheel should be advanced next (0 if some timers are due, -1 if
+     *           there are no pending timers).
+     */
+    long millisUntilNext(long nowMillis) {
+        if (pending == 0) return -1;
+        long tick = nextTick();
+        return Math.max(0, tick * tickMillis - nowMillis);
+    }
+
+    /**
+     * @return - the earliest tick at which the wheel has something to do: expire a timer of the lowest level, or move
+     *           the timers of a higher level down.
+     */
+    private long nextTick() {
+        long next = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; ++level) {
+            int shift = level * BUCKET_BITS;
+            long levelTick = currentTick >>> shift;
+            // the current bucket of a higher level is only due when the levels below it wrap around at the current
+            // tick (otherwise it was moved down already), or for the timers of the top level that are more than a
+            // full rotation away
+            int from = (currentTick & ((1L << shift) - 1)) == 0 ? 0 : 1;
+            int to = level == LEVELS - 1 ? BUCKETS + 1 : BUCKETS - (int) (levelTick & BUCKET_MASK);
+            for (int i = from; i < to; ++i)
+                if (buckets[level][(int) (levelTick + i) & BUCKET_MASK] != null) {
+                    next = Math.min(next, level == 0 ? currentTick + i : (levelTick + i) << shift);
+                    break;
+                }
+        }
+        return next;
+    }
+
+    private void processTick(long tick) {
+        // move the timers of the higher levels down, starting from the highest level that wraps around now
+        int wrapped = 0;
+        while (wrapped < LEVELS - 1 && (tick >>> (wrapped * BUCKET_BITS) & BUCKET_MASK) == 0) ++wrapped;
+        for (int level = wrapped; level > 0; --level) {
+            int bucket = (int) (tick >>> (level * BUCKET_BITS)) & BUCKET_MASK;
+            Timer timer = buckets[level][bucket];
+            buckets[level][bucket] = null;
+            while (timer != null) {
+                Timer next = timer.next;
+                place(timer);
+                timer = next;
+            }
+        }
+
+        // expire the timers of this tick (including ones scheduled by the actions for this tick or earlier)
+        int bucket = (int) tick & BUCKET_MASK;
+        Timer timer;
+        while ((timer = buckets[0][bucket]) != null) {
+            unlink(timer);
+            --pending;
+            timer.action.run();
+        }
+    }
+
+    /**
+     * Links a timer into the bucket of the lowest level whose current rotation contains its deadline.
+     */
+    private void place(Timer timer) {
+        long deadline = Math.max(timer.deadlineTick, currentTick);
+        int level = 0;
+        while (level < LEVELS - 1 && deadline >>> ((level + 1) * BUCKET_BITS) != currentTick >>> ((level + 1) * BUCKET_BITS))
+            ++level;
+        int bucket = (int) (deadline >>> (level * BUCKET_BITS)) & BUCKET_MASK;
+        timer.level = level;
+        timer.bucket = bucket;
+        timer.prev = null;
+        timer.next = buckets[level][bucket];
+        if (timer.next != null) timer.next.prev = timer;
+        buckets[level][bucket] = timer;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.prev != null) timer.prev.next = timer.next;
+        else buckets[timer.level][timer.bucket] = timer.next;
+        if (timer.next != null) timer.next.prev = timer.prev;
+        timer.prev = timer.next = null;
+        timer.level = -1;
+    }
+}
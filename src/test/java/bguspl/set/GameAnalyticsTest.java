@@ -0,0 +1,141 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameAnalyticsTest {
+
+    /**
+     * A clock the test moves by hand.
+     */
+    private static class ManualClock implements GameClock {
+
+        private long millis;
+
+        @Override
+        public long currentTimeMillis() {
+            return millis;
+        }
+
+        @Override
+        public void sleep(long millis) {
+            this.millis += millis;
+        }
+
+        @Override
+        public void await(Object monitor, long millis) {
+            this.millis += millis;
+        }
+
+        @Override
+        public void wake(Object monitor) {}
+
+        @Override
+        public void register() {}
+
+        @Override
+        public void unregister() {}
+    }
+
+    private ManualClock clock;
+    private GameAnalytics analytics;
+
+    @BeforeEach
+    void setUp() {
+
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "2");
+        properties.put("ComputerPlayers", "0");
+        clock = new ManualClock();
+        analytics = new GameAnalytics(new Config(new UtilImplTest.MockLogger(), properties), clock);
+    }
+
+    @Test
+    void timeToFindSet_IsMeasuredFromTheLastDeal() {
+
+        clock.millis = 5_000;
+        analytics.cardsDealt();
+        clock.millis = 7_000;
+        analytics.setFound(0);
+        clock.millis = 9_000;
+        analytics.cardsDealt();
+        clock.millis = 9_010;
+        analytics.setFound(1);
+
+        HistogramSnapshot snapshot = analytics.getTimeToFindSetMillis();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(1_005, snapshot.getMean(), 1e-9);
+        assertEquals(2_000, snapshot.getMax());
+        assertEquals(10, snapshot.getP50());
+    }
+
+    @Test
+    void claimBursts_EndAfterAGapWithoutClaims() {
+
+        // 3 claims within a second of each other, then 2 more after a pause
+        for (long millis : new long[]{0, 400, 1_300, 10_000, 10_999}) {
+            clock.millis = millis;
+            analytics.penalty(0);
+        }
+        HistogramSnapshot bursts = analytics.getClaimBurstSizes();
+        assertEquals(1, bursts.getCount());
+        assertEquals(3, bursts.getMax());
+
+        clock.millis = 12_000;
+        bursts = analytics.getClaimBurstSizes();
+        assertEquals(2, bursts.getCount());
+        assertEquals(2, bursts.getP50());
+    }
+
+    @Test
+    void rates_ForgetHalfTheirWeightEveryHalfLife() {
+
+        for (int i = 0; i < 10; ++i)
+            analytics.penalty(1);
+        analytics.setFound(0);
+
+        // the rate is the weight divided by the mean age of an event (a half-life over ln 2)
+        assertEquals(11 * Math.log(2), analytics.getClaimsPerMinute(), 1e-9);
+        assertEquals(0, analytics.getPenaltiesPerMinute()[0], 1e-9);
+        assertEquals(10 * Math.log(2), analytics.getPenaltiesPerMinute()[1], 1e-9);
+        clock.millis = 60_000;
+        assertEquals(5.5 * Math.log(2), analytics.getClaimsPerMinute(), 1e-9);
+        clock.millis = 120_000;
+        assertEquals(2.5 * Math.log(2), analytics.getPenaltiesPerMinute()[1], 1e-9);
+    }
+
+    @Test
+    void estimators_StayAccurateOverALongGame() {
+
+        // a million reshuffles and claims: the sketches are fixed-size, and their estimates stay within the
+        // histogram precision (1/16) and the steady-state rate
+        int events = 1_000_000;
+        for (int i = 0; i < events; ++i) {
+            analytics.reshuffled(i % 100);
+            clock.millis += 60;
+            analytics.penalty(i % 2);
+        }
+
+        HistogramSnapshot setsLeft = analytics.getSetsLeftOnReshuffle();
+        assertEquals(events, setsLeft.getCount());
+        assertEquals(49.5, setsLeft.getMean(), 1e-9);
+        assertEquals(99, setsLeft.getMax());
+        assertTrue(Math.abs(setsLeft.getP90() - 89) <= 89 / 16 + 1);
+
+        // a claim every 60 ms is 1000 claims a minute
+        assertEquals(1_000, analytics.getClaimsPerMinute(), 10);
+        assertEquals(500, analytics.getPenaltiesPerMinute()[0], 5);
+
+        // every claim followed the previous one within the burst gap, so they are all still one burst
+        assertEquals(0, analytics.getClaimBurstSizes().getCount());
+
+        analytics.reset();
+        assertEquals(0, analytics.getSetsLeftOnReshuffle().getCount());
+        assertEquals(0, analytics.getClaimsPerMinute(), 1e-9);
+    }
+}
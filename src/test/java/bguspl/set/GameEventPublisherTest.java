@@ -0,0 +1,104 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameEventPublisherTest {
+
+    private GameEventPublisher publisher;
+
+    /**
+     * The events the slow subscriber received, and the latch it waits on before receiving the first one.
+     */
+    private final List<GameEvent> received = new ArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "2");
+        properties.put("ComputerPlayers", "0");
+        UtilImplTest.MockLogger logger = new UtilImplTest.MockLogger();
+        publisher = new GameEventPublisher(logger, new Config(logger, properties));
+    }
+
+    private GameEventPublisher.Subscription subscribeSlowly(int capacity, GameEventPublisher.Policy policy) {
+        return publisher.subscribe("slow", event -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (received) {
+                received.add(event);
+            }
+        }, capacity, policy);
+    }
+
+    /**
+     * Publishes on another thread, as the engine does.
+     *
+     * @return - true iff publishing did not wait for the subscriber.
+     */
+    private boolean publish(Runnable events) throws InterruptedException {
+        Thread publishing = new Thread(events, "publishing");
+        publishing.start();
+        publishing.join(5_000);
+        return !publishing.isAlive();
+    }
+
+    @Test
+    void coalesce_NeverWaitsForASlowSubscriber() throws InterruptedException {
+
+        GameEventPublisher.Subscription subscription = subscribeSlowly(4, GameEventPublisher.Policy.COALESCE);
+        assertTrue(publish(() -> {
+            for (int slot = 0; slot < 100; ++slot) {
+                publisher.placeCard(slot, slot);
+                publisher.setScore(slot % 2, slot);
+            }
+        }));
+        assertTrue(subscription.capacity() > 4);
+
+        // every change of the board arrives in order, while the scores collapse into the latest ones
+        release.countDown();
+        publisher.dispose();
+        List<Integer> cards = new ArrayList<>();
+        int[] scores = new int[2];
+        for (GameEvent event : received) {
+            if (event.type == GameEvent.Type.PLACE_CARD) cards.add(event.card);
+            else scores[event.player] = (int) event.value;
+        }
+        assertEquals(100, cards.size());
+        for (int card = 0; card < cards.size(); ++card)
+            assertEquals(card, (int) cards.get(card));
+        assertEquals(98, scores[0]);
+        assertEquals(99, scores[1]);
+        assertTrue(subscription.coalesced() > 0);
+    }
+
+    @Test
+    void drop_CountsTheEventsASlowSubscriberMissed() throws InterruptedException {
+
+        GameEventPublisher.Subscription subscription = subscribeSlowly(4, GameEventPublisher.Policy.DROP);
+        assertTrue(publish(() -> {
+            for (int slot = 0; slot < 100; ++slot)
+                publisher.placeCard(slot, slot);
+        }));
+
+        release.countDown();
+        publisher.dispose();
+        assertEquals(100, received.size() + subscription.dropped());
+        assertEquals(4, subscription.capacity());
+        assertFalse(received.isEmpty());
+    }
+}
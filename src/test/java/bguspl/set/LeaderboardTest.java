@@ -0,0 +1,219 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderboardTest {
+
+    private static final String[] NAMES = {"Alice", "Bob", "Carol"};
+
+    private Path directory;
+    private Path path;
+    private Path indexPath;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("leaderboard");
+        path = directory.resolve("results.bin");
+        indexPath = Paths.get(path + ".idx");
+    }
+
+    @AfterEach
+    void tearDown() {
+        File[] files = directory.toFile().listFiles();
+        if (files != null)
+            for (File file : files)
+                assertTrue(file.delete());
+        assertTrue(directory.toFile().delete());
+    }
+
+    private static void assertSameStanding(Leaderboard.Standing expected, Leaderboard.Standing actual) {
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.games, actual.games);
+        assertEquals(expected.wins, actual.wins);
+        assertEquals(expected.points, actual.points);
+        assertEquals(expected.rating, actual.rating);
+    }
+
+    @Test
+    void append_QueriesSeeTheResultsAfterReopening() throws IOException {
+
+        try (Leaderboard leaderboard = Leaderboard.open(path)) {
+            leaderboard.append(1000, NAMES, new int[]{3, 1, 0});
+            leaderboard.append(2000, NAMES, new int[]{2, 2, 1});
+            leaderboard.append(3000, new String[]{"Alice", "Dave"}, new int[]{0, 4});
+        }
+
+        try (Leaderboard leaderboard = Leaderboard.open(path)) {
+            Leaderboard.Standing alice = leaderboard.standing("Alice");
+            assertEquals(3, alice.games);
+            assertEquals(2, alice.wins); // ties for the best score count as wins
+            assertEquals(5, alice.points);
+            assertEquals(1, leaderboard.standing("Bob").wins);
+            assertEquals(0, leaderboard.standing("Carol").wins);
+            assertNull(leaderboard.standing("Eve"));
+
+            // the ratings add up to the initial ones, as every game only moves rating points between its players
+            List<Leaderboard.Standing> top = leaderboard.top(10);
+            assertEquals(4, top.size());
+            double total = 0;
+            for (int i = 0; i < top.size(); ++i) {
+                total += top.get(i).rating;
+                if (i > 0) assertTrue(top.get(i - 1).rating >= top.get(i).rating);
+            }
+            assertEquals(4 * Leaderboard.INITIAL_RATING, total, 1e-9);
+            assertEquals(2, leaderboard.top(2).size());
+            assertEquals(top.get(0).name, leaderboard.top(1).get(0).name);
+
+            // the history of a player follows the links between its records, newest first
+            List<Leaderboard.GameResult> history = leaderboard.history("Alice", 10);
+            assertEquals(3, history.size());
+            assertEquals(3000, history.get(0).millis);
+            assertEquals(1000, history.get(2).millis);
+            assertArrayEquals(new int[]{2, 2, 1}, history.get(1).scores);
+            assertEquals(2, leaderboard.history("Bob", 10).size());
+            assertEquals(1, leaderboard.history("Alice", 1).size());
+            assertTrue(leaderboard.history("Eve", 10).isEmpty());
+        }
+    }
+
+    @Test
+    void open_IndexesARecordAppendedByAWriterThatDied() throws IOException {
+
+        byte[] indexBefore;
+        Leaderboard.Standing[] after = new Leaderboard.Standing[NAMES.length];
+        try (Leaderboard leaderboard = Leaderboard.open(path)) {
+            leaderboard.append(1000, NAMES, new int[]{3, 1, 0});
+            indexBefore = Files.readAllBytes(indexPath);
+            leaderboard.append(2000, NAMES, new int[]{0, 1, 3});
+            for (int i = 0; i < NAMES.length; ++i)
+                after[i] = leaderboard.standing(NAMES[i]);
+        }
+        byte[] indexAfter = Files.readAllBytes(indexPath);
+
+        // the writer died after appending the record, before updating the index
+        Files.write(indexPath, indexBefore);
+        try (Leaderboard leaderboard = Leaderboard.open(path)) {
+            for (int i = 0; i < NAMES.length; ++i)
+                assertSameStanding(after[i], leaderboard.standing(NAMES[i]));
+        }
+
+        // the writer died after updating the entry of the first player only: the other players' rating changes are
+        // still computed from the ratings before the game
+        byte[] partial = indexBefore.clone();
+        System.arraycopy(indexAfter, Leaderboard.INDEX_HEADER_BYTES, partial, Leaderboard.INDEX_HEADER_BYTES,
+                Leaderboard.ENTRY_BYTES);
+        Files.write(indexPath, partial);
+        try (Leaderboard leaderboard = Leaderboard.open(path)) {
+            for (int i = 0; i < NAMES.length; ++i)
+                assertSameStanding(after[i], leaderboard.standing(NAMES[i]));
+            assertEquals(2, leaderboard.history("Carol", 10).size());
+        }
+    }
+
+    @Test
+    void open_TruncatesATornRecord() throws IOException {
+
+        long length;
+        byte[] indexBefore;
+        try (Leaderboard leaderboard = Leaderboard.open(path)) {
+            leaderboard.append(1000, NAMES, new int[]{3, 1, 0});
+            length = Files.size(path);
+            indexBefore = Files.readAllBytes(indexPath);
+            leaderboard.append(2000, NAMES, new int[]{0, 1, 3});
+        }
+
+        // only a part of the second record made it to the disk, and the index was not updated
+        byte[] data = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(data, (int) (length + data.length) / 2));
+        Files.write(indexPath, indexBefore);
+
+        try (Leaderboard leaderboard = Leaderboard.open(path)) {
+            assertEquals(length, Files.size(path));
+            assertEquals(1, leaderboard.standing("Alice").games);
+            leaderboard.append(3000, NAMES, new int[]{1, 1, 1});
+            List<Leaderboard.GameResult> history = leaderboard.history("Alice", 10);
+            assertEquals(2, history.size());
+            assertEquals(3000, history.get(0).millis);
+            assertEquals(1000, history.get(1).millis);
+        }
+    }
+
+    @Test
+    void append_KeysNamesByTheirTrimmedAndTruncatedForm() throws IOException {
+
+        String longName = "Bartholomew Montgomery Fitzgerald Worthington the Third";
+        String accented = new String(new char[41]).replace('\0', '\u00e9'); // 2 bytes a character
+        try (Leaderboard leaderboard = Leaderboard.open(path)) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> leaderboard.append(1000, new String[]{"Alice", " Alice "}, new int[]{1, 2}));
+            assertThrows(IllegalArgumentException.class,
+                    () -> leaderboard.append(1000, new String[]{longName, longName + " Junior"}, new int[]{1, 2}));
+            assertThrows(IllegalArgumentException.class,
+                    () -> leaderboard.append(1000, new String[]{"Alice"}, new int[]{1, 2}));
+            assertNull(leaderboard.standing("Alice"));
+
+            leaderboard.append(1000, new String[]{" Alice", longName, accented}, new int[]{1, 2, 3});
+            assertEquals("Alice", leaderboard.standing("Alice ").name);
+            Leaderboard.Standing standing = leaderboard.standing(longName);
+            assertTrue(longName.startsWith(standing.name));
+            assertTrue(standing.name.length() < longName.length());
+            assertEquals(1, leaderboard.standing(longName + " Junior").games);
+            assertEquals(23, leaderboard.standing(accented).name.length());
+        }
+    }
+
+    @Test
+    void append_TwoStoresOnTheSamePathKeepEveryRecord() throws IOException, InterruptedException {
+
+        int games = 50;
+        Leaderboard first = Leaderboard.open(path);
+        Leaderboard second = Leaderboard.open(path);
+        IOException[] failures = new IOException[2];
+        Thread[] writers = new Thread[2];
+        for (int w = 0; w < writers.length; ++w) {
+            Leaderboard leaderboard = w == 0 ? first : second;
+            int writer = w;
+            writers[w] = new Thread(() -> {
+                try {
+                    for (int game = 0; game < games; ++game)
+                        leaderboard.append(game, new String[]{"Alice", "Writer" + writer}, new int[]{game % 3, 1});
+                } catch (IOException e) {
+                    failures[writer] = e;
+                }
+            });
+            writers[w].start();
+        }
+        for (Thread writer : writers)
+            writer.join();
+        first.close();
+        second.close();
+        assertNull(failures[0]);
+        assertNull(failures[1]);
+
+        try (Leaderboard leaderboard = Leaderboard.open(path)) {
+            assertEquals(2 * games, leaderboard.standing("Alice").games);
+            assertEquals(games, leaderboard.standing("Writer0").games);
+            assertEquals(games, leaderboard.standing("Writer1").games);
+            assertEquals(2 * games, leaderboard.history("Alice", 3 * games).size());
+            assertEquals(games, leaderboard.history("Writer1", 3 * games).size());
+            assertFalse(leaderboard.top(3).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    Config config;
+    UtilImpl util;
+
+    @BeforeEach
+    void setUp() {
+
+        Properties properties = new Properties();
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        config = new Config(new MockLogger(), properties);
+        util = new UtilImpl(config);
+    }
+
+    @Test
+    void testSet_SameSameOrButDifferent() {
+
+        // features (base 3): 0000, 1111, 2222 are all different in every feature
+        assertTrue(util.testSet(new int[]{0, 40, 80}));
+        // 0000, 0001, 0002 are the same in 3 features and different in one
+        assertTrue(util.testSet(new int[]{0, 1, 2}));
+        // 0000, 0001, 0011 have the first card agreeing with only one other card in feature 3
+        assertFalse(util.testSet(new int[]{0, 1, 4}));
+    }
+
+    @Test
+    void testSets_MatchesTestSet() {
+
+        int n = config.deckSize;
+        int triples = n * (n - 1) * (n - 2) / 6;
+        int[] a = new int[triples], b = new int[triples], c = new int[triples];
+        int t = 0;
+        for (int i = 0; i < n; ++i)
+            for (int j = i + 1; j < n; ++j)
+                for (int k = j + 1; k < n; ++k) {
+                    a[t] = i;
+                    b[t] = j;
+                    c[t++] = k;
+                }
+
+        boolean[] batched = new boolean[triples];
+        util.testSets(a, b, c, batched);
+
+        int sets = 0;
+        Util scalar = new ScalarUtil(util);
+        boolean[] expected = new boolean[triples];
+        scalar.testSets(a, b, c, expected);
+        for (int i = 0; i < triples; ++i) {
+            assertEquals(expected[i], batched[i]);
+            if (batched[i]) ++sets;
+        }
+        // every pair of cards determines exactly one third card
+        assertEquals(n * (n - 1) / 6, sets);
+    }
+
+    @Test
+    void findSets_FindsAllSetsOfTheDeck() {
+
+        int[] deck = IntStream.range(0, config.deckSize).toArray();
+        assertEquals(1080, util.findSets(deck, deck.length, Integer.MAX_VALUE).size());
+        assertEquals(1, util.findSets(deck, deck.length, 1).size());
+    }
+
+    /**
+     * Checks each triple separately through the default (scalar) implementation of Util::testSets.
+     */
+    static class ScalarUtil implements Util {
+
+        private final UtilImpl util;
+
+        ScalarUtil(UtilImpl util) {
+            this.util = util;
+        }
+
+        @Override
+        public int[] cardToFeatures(int card) {
+            return util.cardToFeatures(card);
+        }
+
+        @Override
+        public int[][] cardsToFeatures(int[] cards) {
+            return util.cardsToFeatures(cards);
+        }
+
+        @Override
+        public boolean testSet(int[] cards) {
+            // compare the features directly, without the packed representation
+            int[][] features = util.cardsToFeatures(cards);
+            for (int i = 0; i < features[0].length; ++i) {
+                boolean ab = features[0][i] == features[1][i];
+                boolean bc = features[1][i] == features[2][i];
+                boolean ac = features[0][i] == features[2][i];
+                if (!(ab && bc) && (ab || bc || ac)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public java.util.List<int[]> findSets(java.util.List<Integer> deck, int count) {
+            return util.findSets(deck, count);
+        }
+
+        @Override
+        public void spin() {}
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
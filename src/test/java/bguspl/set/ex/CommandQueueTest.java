@@ -0,0 +1,65 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandQueueTest {
+
+    @Test
+    void offer_FailsWhenFullUntilDrained() {
+
+        // the capacity is rounded up to a power of two
+        CommandQueue queue = new CommandQueue(3);
+        assertTrue(queue.isEmpty());
+        for (long command = 0; command < 4; ++command)
+            assertTrue(queue.offer(command));
+        assertFalse(queue.offer(4));
+        assertFalse(queue.isEmpty());
+
+        long[] batch = new long[3];
+        assertEquals(3, queue.drainTo(batch));
+        assertEquals(0, batch[0]);
+        assertEquals(2, batch[2]);
+        assertTrue(queue.offer(4));
+        assertEquals(2, queue.drainTo(batch));
+        assertEquals(3, batch[0]);
+        assertEquals(4, batch[1]);
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.drainTo(batch));
+    }
+
+    @Test
+    void drainTo_KeepsTheOrderOfEveryProducer() throws InterruptedException {
+
+        int producers = 4, commands = 100_000;
+        CommandQueue queue = new CommandQueue(64);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; ++p) {
+            long producer = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < commands; ++i)
+                    while (!queue.offer(producer << 32 | i))
+                        Thread.yield();
+            });
+            threads[p].start();
+        }
+
+        // the commands of each producer arrive complete and in the order they were offered
+        long[] next = new long[producers];
+        long[] batch = new long[16];
+        for (long taken = 0; taken < (long) producers * commands; ) {
+            int count = queue.drainTo(batch);
+            for (int i = 0; i < count; ++i) {
+                int producer = (int) (batch[i] >>> 32);
+                assertEquals(next[producer]++, (int) batch[i]);
+            }
+            taken += count;
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertTrue(queue.isEmpty());
+    }
+}
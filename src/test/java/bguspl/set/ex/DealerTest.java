@@ -0,0 +1,370 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.GameAnalytics;
+import bguspl.set.GameClock;
+import bguspl.set.GameJournal;
+import bguspl.set.GameMetrics;
+import bguspl.set.RealGameClock;
+import bguspl.set.RecordingUserInterface;
+import bguspl.set.SimulatedGameClock;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DealerTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private Properties properties;
+    private Env env;
+    private RecordingUserInterface ui;
+    private Table table;
+    private Player[] players;
+    private Dealer dealer;
+    private Thread dealerThread;
+
+    @BeforeEach
+    void setUp() {
+
+        properties = new Properties();
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        properties.put("Rows", "3");
+        properties.put("Columns", "4");
+        properties.put("HumanPlayers", "2");
+        properties.put("ComputerPlayers", "0");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("PointFreezeSeconds", "0");
+        properties.put("PenaltyFreezeSeconds", "0");
+        properties.put("RandomSeed", "7");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (dealerThread != null) stopGame();
+    }
+
+    private void stopGame() throws InterruptedException {
+        dealer.terminate();
+        Thread.interrupted(); // terminate interrupts the calling thread
+        synchronized (dealer.keyDealer) {
+            dealer.keyDealer.notifyAll();
+        }
+        dealerThread.join(TIMEOUT_MILLIS);
+        assertFalse(dealerThread.isAlive());
+    }
+
+    /**
+     * Creates a game of human players (whose key presses the tests make) with the given engine mode.
+     */
+    private void createGame(String engineMode) {
+        createGame(engineMode, new RealGameClock());
+    }
+
+    private void createGame(String engineMode, GameClock clock) {
+        properties.put("EngineMode", engineMode);
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        ui = new RecordingUserInterface(config, 1 << 16);
+        env = new Env(logger, config, ui, new UtilImpl(config), new GameMetrics(config), GameJournal.DISABLED, clock,
+                new GameAnalytics(config, clock), null);
+        table = new Table(env);
+        players = new Player[config.players];
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; ++i)
+            players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+    }
+
+    private void startGame(String engineMode) {
+        startGame(engineMode, new RealGameClock());
+    }
+
+    private void startGame(String engineMode, GameClock clock) {
+        createGame(engineMode, clock);
+        dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Waits until the dealer published a table of the given number of cards.
+     *
+     * @return - the cards on the table, by slot.
+     */
+    private int[] awaitCards(int count) throws InterruptedException {
+        int[] cards = new int[env.config.tableSize];
+        await(() -> {
+            Table.Snapshot snapshot = table.snapshot();
+            int placed = 0;
+            for (int slot = 0; slot < cards.length; ++slot)
+                if ((cards[slot] = snapshot.card(slot)) != Table.EMPTY) ++placed;
+            return placed == count;
+        });
+        return cards;
+    }
+
+    /**
+     * Places a player's tokens on slots and queues the player's claim, as a player thread does (locking engine mode).
+     */
+    private void claim(Player player, int... slots) {
+        for (int slot : slots) {
+            player.tokensAdd(slot);
+            table.placeToken(player.id, slot);
+        }
+        dealer.playerSetQueue.offer(player);
+    }
+
+    /**
+     * Waits until the dealer published a full table holding a set.
+     *
+     * @return - the slots of a set on the table.
+     */
+    private int[] awaitSet() throws InterruptedException {
+        int[] slots = new int[3];
+        await(() -> {
+            Table.Snapshot snapshot = table.snapshot();
+            int[] cards = new int[env.config.tableSize];
+            for (int slot = 0; slot < cards.length; ++slot) {
+                cards[slot] = snapshot.card(slot);
+                if (cards[slot] == Table.EMPTY) return false;
+            }
+            List<int[]> sets = env.util.findSets(cards, cards.length, 1);
+            if (sets.isEmpty()) return false;
+            for (int i = 0; i < 3; ++i)
+                for (int slot = 0; slot < cards.length; ++slot)
+                    if (cards[slot] == sets.get(0)[i]) slots[i] = slot;
+            return true;
+        });
+        return slots;
+    }
+
+    @Test
+    void actorMode_ClaimsASetThroughTheDealer() throws InterruptedException {
+
+        startGame("Actor");
+        int[] slots = awaitSet();
+        int[] cards = new int[slots.length];
+        for (int i = 0; i < slots.length; ++i)
+            cards[i] = table.snapshot().card(slots[i]);
+
+        // the key presses go to the player's mailbox, and the toggles to the dealer, which owns the table
+        for (int slot : slots)
+            players[1].keyPressed(slot);
+        await(() -> players[1].score() == 1);
+        assertEquals(0, players[0].score());
+        await(() -> {
+            Table.Snapshot snapshot = table.snapshot();
+            for (int slot : slots)
+                for (int card : cards)
+                    if (snapshot.card(slot) == card || snapshot.card(slot) == Table.EMPTY) return false;
+            return true;
+        });
+        assertEquals(1, env.metrics.getValidClaims());
+        for (int slot : slots)
+            assertFalse(ui.board().hasToken(1, slot));
+    }
+
+    @Test
+    void actorMode_DropsKeyPressesWhenTheMailboxIsFull() {
+
+        createGame("Actor");
+        for (int slot = 0; slot < env.config.tableSize; ++slot)
+            table.placeCard(slot, slot);
+        table.publish();
+        List<Runnable> tasks = new ArrayList<>();
+        players[0].startActor(tasks::add);
+
+        // the mailbox takes 4 key presses (its capacity rounded up to a power of two), and only one task is scheduled
+        for (int slot = 0; slot < 5; ++slot)
+            players[0].keyPressed(slot);
+        assertEquals(1, tasks.size());
+        assertEquals(1, env.metrics.getKeyPressesDropped());
+
+        // the tasks hand at most 3 pending toggles over to the dealer (which is not running), and drop the rest
+        while (!tasks.isEmpty())
+            tasks.remove(0).run();
+        assertEquals(2, env.metrics.getKeyPressesDropped());
+    }
+
+    /**
+     * Plays a game of computer players with a deck of 27 cards on the simulated clock, until no set is left.
+     *
+     * @return - the game time that passed for each point scored.
+     */
+    private double gameMillisPerPoint(String engineMode) throws InterruptedException {
+        properties.put("FeatureCount", "3");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "4");
+        properties.put("PointFreezeSeconds", "1");
+        properties.put("PenaltyFreezeSeconds", "3");
+        properties.put("TurnTimeoutSeconds", "60");
+        SimulatedGameClock clock = new SimulatedGameClock();
+        long start = clock.currentTimeMillis();
+        startGame(engineMode, clock);
+        dealerThread.join(6 * TIMEOUT_MILLIS);
+        assertFalse(dealerThread.isAlive());
+
+        long elapsed = clock.currentTimeMillis() - start;
+        int points = 0;
+        for (Player player : players)
+            points += player.score();
+        assertTrue(points > 0);
+        return (double) elapsed / points;
+    }
+
+    // random key presses claim a set about once in 25 claims, each costing a 3 seconds penalty: with 4 computer
+    // players that is about 20 seconds of game time per point, unless the clock skips time while they are busy
+
+    @Test
+    void simulatedTime_LockingComputerPlayersScoreAlongTheGameTime() throws InterruptedException {
+        assertTrue(gameMillisPerPoint("Locking") < 5 * 60_000);
+    }
+
+    @Test
+    void simulatedTime_SingleWriterComputerPlayersScoreAlongTheGameTime() throws InterruptedException {
+        assertTrue(gameMillisPerPoint("Single-Writer") < 5 * 60_000);
+    }
+
+    @Test
+    void simulatedTime_ActorComputerPlayersScoreAlongTheGameTime() throws InterruptedException {
+        assertTrue(gameMillisPerPoint("Actor") < 5 * 60_000);
+    }
+
+    @Test
+    void placeCards_DealsDistinctCardsReproduciblyFromTheSeed() throws InterruptedException {
+
+        startGame("Locking");
+        int[] first = awaitCards(env.config.tableSize);
+        boolean[] dealt = new boolean[env.config.deckSize];
+        for (int card : first) {
+            assertFalse(dealt[card]);
+            dealt[card] = true;
+        }
+        stopGame();
+
+        // the same seed draws the same cards into the same slots
+        startGame("Locking");
+        assertArrayEquals(first, awaitCards(env.config.tableSize));
+    }
+
+    @Test
+    void placeCards_DealsTheWholeDeckWhenItIsSmallerThanTheTable() throws InterruptedException {
+
+        // 9 cards for 12 slots
+        properties.put("FeatureCount", "2");
+        startGame("Locking");
+        int[] cards = awaitCards(9);
+        boolean[] dealt = new boolean[env.config.deckSize];
+        for (int card : cards)
+            if (card != Table.EMPTY) dealt[card] = true;
+        for (boolean card : dealt)
+            assertTrue(card);
+    }
+
+    @Test
+    void removeCards_HandlesThePendingClaimsInOnePass() {
+
+        properties.put("HumanPlayers", "3");
+        createGame("Locking");
+        for (int card = 0; card < env.config.tableSize; ++card)
+            table.placeCard(card, card);
+
+        // cards 0, 1 and 2 form a set, and so do 0, 3 and 6, while 3, 4 and 7 do not
+        claim(players[0], 0, 1, 2);
+        claim(players[1], 0, 3, 6);
+        claim(players[2], 3, 4, 7);
+        dealer.removeCardsFromTable();
+
+        assertTrue(dealer.playerSetQueue.isEmpty());
+        assertEquals(3, env.metrics.getClaimsProcessed());
+        assertEquals(3, env.metrics.getClaimQueueDepth().getMax());
+        assertEquals(1, players[0].score());
+        for (int slot = 0; slot < 3; ++slot)
+            assertEquals(Table.EMPTY, table.slotToCard[slot]);
+
+        // the second claim lost card 0 to the first one, so it is dropped without a penalty
+        assertEquals(0, players[1].score());
+        assertEquals(2, players[1].tokensSize());
+        assertEquals(0, players[1].freezeTime);
+        assertEquals(0, players[2].score());
+        assertTrue(players[2].freezeTime > 0);
+        assertEquals(1, env.metrics.getValidClaims());
+        assertEquals(1, env.metrics.getInvalidClaims());
+    }
+
+    @Test
+    void removeCards_TrustsTheSpeculativeVerdictOnlyForTheSameTableVersion() {
+
+        createGame("Locking");
+        for (int card = 0; card < env.config.tableSize; ++card)
+            table.placeCard(card, card);
+
+        // a verdict computed against the current table is taken as is (a wrong one shows that it was not recomputed)
+        players[0].claimCards[0] = 0;
+        players[0].claimCards[1] = 1;
+        players[0].claimCards[2] = 3;
+        players[0].claimValid = false;
+        players[0].claimVersion = table.version();
+        claim(players[0], 0, 1, 2);
+        dealer.removeCardsFromTable();
+        assertEquals(0, players[0].score());
+        assertEquals(1, env.metrics.getInvalidClaims());
+        assertEquals(2, table.cardToSlot[2]);
+        players[0].tokensClear();
+        for (int slot = 0; slot < 3; ++slot)
+            table.removeToken(0, slot);
+
+        // a card was replaced since the verdict, so the dealer checks the cards now on the claimed slots
+        players[1].claimCards[0] = 0;
+        players[1].claimCards[1] = 1;
+        players[1].claimCards[2] = 3;
+        players[1].claimValid = false;
+        players[1].claimVersion = table.version();
+        table.removeCard(5);
+        table.placeCard(5, 5);
+        claim(players[1], 0, 1, 2);
+        dealer.removeCardsFromTable();
+        assertEquals(1, players[1].score());
+        assertEquals(1, env.metrics.getValidClaims());
+        for (int slot = 0; slot < 3; ++slot)
+            assertEquals(Table.EMPTY, table.slotToCard[slot]);
+    }
+
+    @Test
+    void timerLoop_ReshufflesATableWithoutASetRightAway() throws InterruptedException {
+
+        // 2 cards never form a set, so every deal is reshuffled without waiting for the countdown
+        properties.put("Rows", "1");
+        properties.put("Columns", "2");
+        properties.put("HumanPlayers", "0");
+        properties.put("TurnTimeoutSeconds", "60");
+        SimulatedGameClock clock = new SimulatedGameClock();
+        long start = clock.currentTimeMillis();
+        startGame("Locking", clock);
+
+        // every reshuffle removes and places both cards
+        await(() -> table.version() >= 10 * 4);
+        assertTrue(clock.currentTimeMillis() - start < env.config.turnTimeoutMillis);
+        assertTrue(dealerThread.isAlive());
+    }
+}
@@ -0,0 +1,142 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.GameAnalytics;
+import bguspl.set.GameJournal;
+import bguspl.set.GameMetrics;
+import bguspl.set.RealGameClock;
+import bguspl.set.UserInterfaceDecorator;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalReplayTest {
+
+    private Path directory;
+    private Env env;
+    private Table table;
+
+    @BeforeEach
+    void setUp() throws IOException {
+
+        directory = Files.createTempDirectory("journal");
+        Properties properties = new Properties();
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        properties.put("Rows", "3");
+        properties.put("Columns", "4");
+        properties.put("HumanPlayers", "2");
+        properties.put("ComputerPlayers", "1");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("JournalFile", directory.resolve("game.bin").toString());
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        RealGameClock clock = new RealGameClock();
+        GameJournal journal = GameJournal.open(logger, config, clock);
+        assertTrue(journal.enabled());
+        env = new Env(logger, config, new UserInterfaceDecorator(null), new UtilImpl(config), new GameMetrics(config),
+                journal, clock, new GameAnalytics(config, clock), null);
+        table = new Table(env);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        env.journal.close();
+        File[] files = directory.toFile().listFiles();
+        if (files != null)
+            for (File file : files)
+                assertTrue(file.delete());
+        assertTrue(directory.toFile().delete());
+    }
+
+    /**
+     * Closes the journal and replays it.
+     */
+    private JournalReplay.Result replay(ByteArrayOutputStream out) throws IOException {
+        env.journal.close();
+        File[] files = directory.toFile().listFiles();
+        assertEquals(1, files.length);
+        try (GameJournal.Reader reader = new GameJournal.Reader(files[0].toPath())) {
+            return JournalReplay.replay(reader, new PrintStream(out, true));
+        }
+    }
+
+    @Test
+    void replay_RebuildsTheTable() throws IOException {
+
+        // random changes of the cards and the tokens, as the dealer and the players make them
+        Random random = new Random(31);
+        int changes = 0;
+        for (int i = 0; i < 2_000; ++i) {
+            int slot = random.nextInt(env.config.tableSize);
+            int player = random.nextInt(env.config.players);
+            switch (random.nextInt(4)) {
+                case 0:
+                    int card = random.nextInt(env.config.deckSize);
+                    if (table.slotToCard[slot] != Table.EMPTY || table.cardToSlot[card] != Table.EMPTY) continue;
+                    table.placeCard(card, slot);
+                    break;
+                case 1:
+                    if (table.slotToCard[slot] == Table.EMPTY) continue;
+                    table.removeTokens(slot, new long[1]);
+                    table.removeCard(slot);
+                    break;
+                case 2:
+                    if (table.slotToCard[slot] == Table.EMPTY) continue;
+                    table.placeToken(player, slot);
+                    break;
+                default:
+                    if (!table.removeToken(player, slot)) continue;
+            }
+            ++changes;
+        }
+        env.journal.freeze(1, 3_000);
+        env.journal.reshuffle();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JournalReplay.Result result = replay(out);
+        assertTrue(result.events >= changes + 2); // and a token removal for each token on a removed card
+        assertEquals(0, result.mismatches);
+        assertEquals(1, result.reshuffles);
+        assertEquals(3_000, result.freezeMillis[1]);
+        assertArrayEquals(table.slotToCard, result.table.slotToCard);
+        assertArrayEquals(table.cardToSlot, result.table.cardToSlot);
+        for (int slot = 0; slot < env.config.tableSize; ++slot)
+            for (int player = 0; player < env.config.players; ++player)
+                assertEquals(table.removeToken(player, slot), result.table.removeToken(player, slot));
+    }
+
+    @Test
+    void replay_RevalidatesTheClaims() throws IOException {
+
+        // cards 0, 1 and 2 form a set, cards 0, 1 and 3 do not
+        for (int card = 0; card < 4; ++card)
+            table.placeCard(card, card);
+        env.journal.claim(0, new int[]{0, 1, 2}, true);
+        env.journal.claim(1, new int[]{0, 1, 3}, false);
+        env.journal.claim(2, new int[]{0, 1, 3}, true);   // recorded wrong
+        env.journal.claim(2, new int[]{0, 1, 77}, false); // not on the table
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JournalReplay.Result result = replay(out);
+        assertEquals(2, result.mismatches);
+        assertArrayEquals(new int[]{1, 0, 1}, result.points);
+        assertArrayEquals(new int[]{0, 1, 1}, result.penalties);
+        assertTrue(out.toString().contains("(cards not on the table)"));
+    }
+}
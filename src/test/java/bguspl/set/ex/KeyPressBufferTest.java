@@ -0,0 +1,81 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyPressBufferTest {
+
+    @Test
+    void offer_FailsWhenFullUntilPolled() {
+
+        KeyPressBuffer buffer = new KeyPressBuffer(3);
+        assertTrue(buffer.isEmpty());
+        assertEquals(KeyPressBuffer.EMPTY, buffer.poll());
+
+        // the ring is larger than the capacity, so go around it a few times
+        int next = 0;
+        for (int round = 0; round < 5; ++round) {
+            for (int i = 0; i < 3; ++i)
+                assertTrue(buffer.offer(next + i));
+            assertFalse(buffer.offer(99));
+            assertEquals(next, buffer.poll());
+            assertTrue(buffer.offer(next + 3));
+            assertFalse(buffer.offer(99));
+            for (int i = 1; i <= 3; ++i)
+                assertEquals(next + i, buffer.poll());
+            assertTrue(buffer.isEmpty());
+            next += 4;
+        }
+
+        buffer.offer(1);
+        buffer.offer(2);
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertEquals(KeyPressBuffer.EMPTY, buffer.poll());
+        for (int i = 0; i < 3; ++i)
+            assertTrue(buffer.offer(i));
+    }
+
+    @Test
+    void clear_RacingPollNeverYieldsAKeyPressTwiceOrOutOfOrder() throws InterruptedException {
+
+        int presses = 200_000;
+        KeyPressBuffer buffer = new KeyPressBuffer(3);
+        AtomicBoolean done = new AtomicBoolean();
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < presses; ++i)
+                while (!buffer.offer(i))
+                    Thread.yield();
+            done.set(true);
+        });
+        Thread dealer = new Thread(() -> {
+            while (!done.get()) {
+                buffer.clear();
+                Thread.yield();
+            }
+        });
+
+        // every key press is either taken once, in the order offered, or discarded
+        producer.start();
+        dealer.start();
+        int last = -1, taken = 0;
+        while (!done.get() || !buffer.isEmpty()) {
+            int slot = buffer.poll();
+            if (slot == KeyPressBuffer.EMPTY) continue;
+            assertTrue(slot > last);
+            last = slot;
+            ++taken;
+        }
+        producer.join();
+        dealer.join();
+        assertTrue(taken > 0);
+        assertTrue(taken <= presses);
+        assertEquals(KeyPressBuffer.EMPTY, buffer.poll());
+    }
+}
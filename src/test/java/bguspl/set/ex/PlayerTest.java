@@ -2,7 +2,7 @@ package bguspl.set.ex;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
-import bguspl.set.UserInterface;
+import bguspl.set.RecordingUserInterface;
 import bguspl.set.Util;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,8 +15,6 @@ import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,8 +23,7 @@ class PlayerTest {
     Player player;
     @Mock
     Util util;
-    @Mock
-    private UserInterface ui;
+    private RecordingUserInterface ui;
     @Mock
     private Table table;
     @Mock
@@ -42,7 +39,9 @@ class PlayerTest {
     @BeforeEach
     void setUp() {
         // purposely do not find the configuration files (use defaults here).
-        Env env = new Env(logger, new Config(logger, (String) null), ui, util);
+        Config config = new Config(logger, (String) null);
+        ui = new RecordingUserInterface(config, 16);
+        Env env = new Env(logger, config, ui, util);
         player = new Player(env, dealer, table, 0, false);
         assertInvariants();
     }
@@ -67,7 +66,20 @@ class PlayerTest {
         // check that the score was increased correctly
         assertEquals(expectedScore, player.score());
 
-        // check that ui.setScore was called with the player's id and the correct score
-        verify(ui).setScore(eq(player.id), eq(expectedScore));
+        // check that the ui shows the player's new score, and nothing else changed on the board
+        assertEquals(1, ui.recorded());
+        assertEquals(expectedScore, ui.board().score(player.id));
+    }
+
+    @Test
+    void penalty() {
+
+        int expectedScore = player.score();
+        player.penalty();
+
+        // the score stays as it was, and the ui is not touched until the dealer shows the freeze
+        assertEquals(expectedScore, player.score());
+        assertEquals(0, ui.recorded());
+        assertEquals(0, ui.board().score(player.id));
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TableAnalyzerTest {
+
+    private static Config config(String featureCount, String featureSize, String rows, String columns) {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", featureCount);
+        properties.put("FeatureSize", featureSize);
+        properties.put("Rows", rows);
+        properties.put("Columns", columns);
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "0");
+        return new Config(new TableTest.MockLogger(), properties);
+    }
+
+    /**
+     * Checks the sets the worker counts among random tables against findSets.
+     */
+    private static void assertCountsLikeFindSets(Config config) {
+        Util util = new UtilImpl(config);
+        TableAnalyzer.Worker worker = new TableAnalyzer.Worker(util, config, new SplittableRandom(5));
+        SplittableRandom random = new SplittableRandom(11);
+        int n = Math.min(config.tableSize, config.deckSize);
+        int[] deck = worker.deck;
+        for (int table = 0; table < 500; ++table) {
+            for (int j = 0; j < n; ++j) {
+                int k = j + random.nextInt(deck.length - j);
+                int card = deck[j];
+                deck[j] = deck[k];
+                deck[k] = card;
+            }
+            assertEquals(util.findSets(deck, n, Integer.MAX_VALUE).size(), worker.countSets(n));
+        }
+    }
+
+    @Test
+    void countSets_MatchesFindSets() {
+
+        // the bulk check of all the slot triples
+        assertCountsLikeFindSets(config("4", "3", "3", "4"));
+        assertCountsLikeFindSets(config("4", "3", "3", "6"));
+        // a deck smaller than the table
+        assertCountsLikeFindSets(config("2", "3", "3", "4"));
+        // sets of 4 cards, searched with findSets
+        assertCountsLikeFindSets(config("3", "4", "3", "4"));
+    }
+
+    @Test
+    void run_PlaysEveryGameUntilTheDeckHoldsNoSet() {
+
+        Config config = config("4", "3", "3", "4");
+        TableAnalyzer.Worker worker = new TableAnalyzer.Worker(new UtilImpl(config), config, new SplittableRandom(3));
+        TableAnalyzer.Tally tally = worker.run(1_000, 20);
+        assertEquals(1_000, tally.tables);
+        assertTrue(tally.deadTables > 0);
+        assertTrue(tally.deadTables < tally.tables);
+        assertEquals(20, tally.games);
+        assertTrue(tally.rounds >= tally.games);
+
+        // a game takes at most a third of the deck in sets, and leaves at most 20 cards holding no set (the largest
+        // such collection of 4 features)
+        assertTrue(tally.setsTaken <= tally.games * (config.deckSize / 3));
+        assertTrue(tally.setsTaken >= tally.games * ((config.deckSize - 20) / 3));
+
+        // the worker restores the full deck after every game
+        boolean[] seen = new boolean[config.deckSize];
+        for (int card : worker.deck)
+            seen[card] = true;
+        for (boolean card : seen)
+            assertTrue(card);
+    }
+}
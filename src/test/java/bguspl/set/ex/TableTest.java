@@ -2,8 +2,9 @@ package bguspl.set.ex;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
-import bguspl.set.UserInterface;
+import bguspl.set.RecordingUserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -12,10 +13,13 @@ import java.util.Properties;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
     Table table;
+    private RecordingUserInterface ui;
     private Integer[] slotToCard;
     private Integer[] cardToSlot;
 
@@ -35,7 +39,8 @@ class TableTest {
         slotToCard = new Integer[config.tableSize];
         cardToSlot = new Integer[config.deckSize];
 
-        Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
+        ui = new RecordingUserInterface(config, 16);
+        Env env = new Env(logger, config, ui, new MockUtil());
         table = new Table(env, slotToCard, cardToSlot);
     }
 
@@ -60,6 +65,8 @@ class TableTest {
 
         assertEquals(8, (int) slotToCard[2]);
         assertEquals(2, (int) cardToSlot[8]);
+        assertEquals(8, ui.board().card(2));
+        assertEquals(1, ui.board().countCards());
     }
 
     @Test
@@ -95,32 +102,153 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
-    static class MockUserInterface implements UserInterface {
-        @Override
-        public void dispose() {}
-        @Override
-        public void placeCard(int card, int slot) {}
-        @Override
-        public void removeCard(int slot) {}
-        @Override
-        public void setCountdown(long millies, boolean warn) {}
-        @Override
-        public void setElapsed(long millies) {}
-        @Override
-        public void setScore(int player, int score) {}
-        @Override
-        public void setFreeze(int player, long millies) {}
-        @Override
-        public void placeToken(int player, int slot) {}
-        @Override
-        public void removeTokens() {}
-        @Override
-        public void removeTokens(int slot) {}
-        @Override
-        public void removeToken(int player, int slot) {}
-        @Override
-        public void announceWinner(int[] players) {}
-    };
+    @Test
+    void removeToken_NoTokenPlaced() {
+
+        fillSomeSlots();
+        assertFalse(table.removeToken(0, 1));
+        assertEquals(0, ui.recorded());
+    }
+
+    @Test
+    void removeToken_TokenPlaced() {
+
+        fillSomeSlots();
+        table.placeToken(0, 1);
+        assertTrue(ui.board().hasToken(0, 1));
+        assertTrue(table.removeToken(0, 1));
+        assertFalse(ui.board().hasToken(0, 1));
+        assertFalse(table.removeToken(0, 1));
+        assertEquals(2, ui.recorded());
+    }
+
+    @Test
+    void removeTokens_ReturnsTheOwners() {
+
+        fillSomeSlots();
+        table.placeToken(0, 1);
+        table.placeToken(1, 1);
+        table.placeToken(1, 2);
+
+        long[] owners = new long[1];
+        assertTrue(table.removeTokens(1, owners));
+        assertEquals(0b11L, owners[0]);
+        RecordingUserInterface.Board board = ui.board();
+        assertFalse(board.hasToken(0, 1) || board.hasToken(1, 1));
+        assertTrue(board.hasToken(1, 2));
+        assertFalse(table.removeTokens(1, owners));
+        assertEquals(0L, owners[0]);
+        assertTrue(table.removeToken(1, 2));
+        assertFalse(ui.board().hasToken(1, 2));
+    }
+
+    @Test
+    void hasSet_SeesEditsOfTheBoxedMappings() {
+
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        Table table = new Table(new Env(logger, config, ui, new UtilImpl(config)), slotToCard, cardToSlot);
+
+        fillSomeSlots();
+        assertFalse(table.hasSet());
+
+        // cards 3, 4 and 5 (features 0010, 0011 and 0012) form a set
+        slotToCard[0] = 4;
+        cardToSlot[4] = 0;
+        assertTrue(table.hasSet());
+        assertEquals(1, table.currentHints().size());
+
+        slotToCard[1] = null;
+        cardToSlot[3] = null;
+        assertFalse(table.hasSet());
+        assertTrue(table.currentHints().isEmpty());
+    }
+
+    @Test
+    void userInterface_ShowsTheTable() {
+
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("TableDelaySeconds", "0");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        RecordingUserInterface ui = new RecordingUserInterface(config, 4);
+        Table table = new Table(new Env(logger, config, ui, new MockUtil()), new Integer[config.tableSize],
+                new Integer[config.deckSize]);
+
+        // each call is stamped with the time it was made at
+        Runnable[] calls = {
+                () -> table.placeCard(8, 2),
+                () -> table.placeCard(5, 3),
+                () -> table.placeToken(0, 2),
+                () -> table.placeToken(1, 2),
+                () -> table.placeToken(1, 3),
+                () -> table.removeTokens(2, new long[1]),
+                () -> table.removeCard(2)
+        };
+        long[] before = new long[calls.length];
+        long[] after = new long[calls.length];
+        for (int i = 0; i < calls.length; ++i) {
+            before[i] = System.nanoTime();
+            calls[i].run();
+            after[i] = System.nanoTime();
+        }
+
+        // the ring only keeps the last 4 calls, but the board is known as of every call
+        assertEquals(7, ui.recorded());
+        assertEquals(3, ui.oldest());
+        RecordingUserInterface.Board board = ui.board();
+        assertEquals(-1, board.card(2));
+        assertEquals(5, board.card(3));
+        assertFalse(board.hasToken(0, 2) || board.hasToken(1, 2));
+        assertTrue(board.hasToken(1, 3));
+
+        board = ui.boardAt(5);
+        assertEquals(8, board.card(2));
+        assertTrue(board.hasToken(0, 2) && board.hasToken(1, 2));
+        for (long call = ui.oldest(); call < ui.recorded(); ++call) {
+            assertTrue(ui.nanos(call) - before[(int) call] >= 0);
+            assertTrue(after[(int) call] - ui.nanos(call) >= 0);
+        }
+    }
+
+    @Test
+    void userInterface_ShowsTheTableAsOfAnyTimeKept() {
+
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("TableDelaySeconds", "0");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        RecordingUserInterface ui = new RecordingUserInterface(config, 4);
+        Table table = new Table(new Env(logger, config, ui, new MockUtil()), new Integer[config.tableSize],
+                new Integer[config.deckSize]);
+
+        // deal 10 cards into the slots in turn, noting a time between every two calls, so the ring wraps around twice
+        int calls = 10;
+        long[] times = new long[calls];
+        for (int i = 0; i < calls; ++i) {
+            table.placeCard(i, i % config.tableSize);
+            times[i] = System.nanoTime();
+            while (System.nanoTime() == times[i])
+                Thread.yield();
+        }
+        assertEquals(calls - 4, ui.oldest());
+
+        // the board as of the time after each call kept shows the last card dealt into every slot
+        for (int i = (int) ui.oldest(); i < calls; ++i) {
+            RecordingUserInterface.Board board = ui.boardAtNanos(times[i]);
+            for (int slot = 0; slot < config.tableSize; ++slot) {
+                int last = i - (i - slot + config.tableSize) % config.tableSize;
+                assertEquals(last < 0 ? -1 : last, board.card(slot));
+            }
+        }
+        assertEquals(calls - 1, ui.boardAtNanos(System.nanoTime()).card((calls - 1) % config.tableSize));
+    }
 
     static class MockUtil implements Util {
         @Override
@@ -0,0 +1,102 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+
+    private static final long TICK_MILLIS = 10;
+
+    @Test
+    void advance_ExpiresEveryTimerOnTimeAndInOrder() {
+
+        // deadlines on all the levels, and beyond a full rotation of the top one (64^4 ticks)
+        Random random = new Random(17);
+        long start = 123_456;
+        TimerWheel wheel = new TimerWheel(TICK_MILLIS, start);
+        int timers = 5_000;
+        long[] deadlines = new long[timers];
+        long[] expired = new long[timers];
+        List<Integer> order = new ArrayList<>();
+        long[] now = {start};
+        for (int i = 0; i < timers; ++i) {
+            int timer = i;
+            long range = i % 5 == 0 ? 200_000_000L : 3_000_000L;
+            deadlines[i] = start + (long) (random.nextDouble() * range);
+            wheel.schedule(deadlines[i], () -> {
+                expired[timer] = now[0];
+                order.add(timer);
+            });
+        }
+
+        long previous = start;
+        while (order.size() < timers) {
+            previous = now[0];
+            now[0] += 1 + random.nextInt(100_000);
+            wheel.advance(now[0]);
+            for (int i = 0; i < timers; ++i)
+                if (expired[i] == now[0]) {
+                    // never early, and at most one tick late
+                    assertTrue(deadlines[i] <= now[0]);
+                    assertTrue(previous < deadlines[i] + TICK_MILLIS);
+                }
+        }
+        for (int i = 1; i < timers; ++i)
+            assertTrue((deadlines[order.get(i - 1)] + TICK_MILLIS - 1) / TICK_MILLIS
+                    <= (deadlines[order.get(i)] + TICK_MILLIS - 1) / TICK_MILLIS);
+        assertEquals(-1, wheel.millisUntilNext(now[0]));
+    }
+
+    @Test
+    void millisUntilNext_WakesForEachCascadeUntilTheDeadline() {
+
+        // a timer on the third level moves down a level at each wake-up, as the dealer sleeps between them
+        TimerWheel wheel = new TimerWheel(TICK_MILLIS, 0);
+        long deadline = (2 * 64 * 64 + 5 * 64 + 7) * TICK_MILLIS;
+        boolean[] expired = new boolean[1];
+        TimerWheel.Timer timer = wheel.schedule(deadline, () -> expired[0] = true);
+        long now = 0;
+        int wakeUps = 0;
+        while (!expired[0]) {
+            long millis = wheel.millisUntilNext(now);
+            assertTrue(millis > 0);
+            now += millis;
+            assertTrue(now <= deadline);
+            wheel.advance(now);
+            ++wakeUps;
+        }
+        assertEquals(deadline, now);
+        assertEquals(3, wakeUps);
+        assertFalse(timer.pending());
+    }
+
+    @Test
+    void cancel_KeepsTheActionFromRunning() {
+
+        TimerWheel wheel = new TimerWheel(TICK_MILLIS, 0);
+        int[] runs = new int[1];
+        TimerWheel.Timer near = wheel.schedule(50, () -> ++runs[0]);
+        TimerWheel.Timer far = wheel.schedule(1_000_000, () -> ++runs[0]);
+        wheel.schedule(60, () -> wheel.cancel(far));
+        wheel.cancel(near);
+        wheel.cancel(near);
+        assertFalse(near.pending());
+        assertTrue(far.pending());
+
+        // an action may schedule another one that is already due, which runs in the same advance
+        wheel.schedule(70, () -> wheel.schedule(0, () -> ++runs[0]));
+        wheel.advance(100);
+        assertEquals(1, runs[0]);
+        assertFalse(far.pending());
+        assertEquals(-1, wheel.millisUntilNext(100));
+        wheel.advance(2_000_000);
+        assertEquals(1, runs[0]);
+    }
+}